@@ -0,0 +1,82 @@
+package com.example.testaddviewphoto;
+
+import android.view.View;
+
+/**
+ * A child that springs from a displacement back to its laid out position. A
+ * child displaced again while still moving keeps its velocity; only the rest
+ * point of its springs moves. Only the axes it was displaced along are
+ * written, so a translation set by the app on the other axis is left alone.
+ */
+class DisplacedChild implements FrameAnimator.Animation {
+    final View mView;
+    private final FrameAnimator mAnimator;
+    private final Spring mSpringX = new Spring(Spring.SWITCH_STIFFNESS);
+    private final Spring mSpringY = new Spring(Spring.SWITCH_STIFFNESS);
+    private boolean mMovingX;
+    private boolean mMovingY;
+    private boolean mAnimating;
+
+    DisplacedChild(View view, FrameAnimator animator) {
+        mView = view;
+        mAnimator = animator;
+    }
+
+    boolean isAnimating() {
+        return mAnimating;
+    }
+
+    /**
+     * Springs the child's translation back to 0 from the given values.
+     */
+    void animateFrom(float fromX, float fromY) {
+        if (0 != fromX || mMovingX) {
+            mSpringX.mPosition = fromX;
+            mSpringX.mTarget = 0;
+            if (!mMovingX) mSpringX.mVelocity = 0;
+            mMovingX = true;
+            mView.setTranslationX(fromX);
+        }
+        if (0 != fromY || mMovingY) {
+            mSpringY.mPosition = fromY;
+            mSpringY.mTarget = 0;
+            if (!mMovingY) mSpringY.mVelocity = 0;
+            mMovingY = true;
+            mView.setTranslationY(fromY);
+        }
+        if (mAnimating || !mMovingX && !mMovingY) return;
+        mAnimating = true;
+        mAnimator.add(this);
+    }
+
+    /**
+     * Stops the child where it belongs.
+     */
+    void endAnimation() {
+        mAnimator.remove(this);
+    }
+
+    @Override
+    public boolean step(long frameNanos) {
+        if (mMovingX) {
+            mSpringX.step(frameNanos);
+            mMovingX = !mSpringX.isAtRest();
+            mView.setTranslationX(mMovingX ? mSpringX.mPosition : 0f);
+        }
+        if (mMovingY) {
+            mSpringY.step(frameNanos);
+            mMovingY = !mSpringY.isAtRest();
+            mView.setTranslationY(mMovingY ? mSpringY.mPosition : 0f);
+        }
+        return mMovingX || mMovingY;
+    }
+
+    @Override
+    public void end() {
+        if (mMovingX) mView.setTranslationX(0f);
+        if (mMovingY) mView.setTranslationY(0f);
+        mMovingX = false;
+        mMovingY = false;
+        mAnimating = false;
+    }
+}
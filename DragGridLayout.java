@@ -0,0 +1,558 @@
+package com.example.testaddviewphoto;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import androidx.annotation.NonNull;
+import androidx.core.view.MotionEventCompat;
+
+import java.util.HashMap;
+
+/**
+ * A wrapping grid of equally sized cells whose children can be dragged to any
+ * other cell. Shares the drag model of {@link DragLinearLayout}: the drag runs
+ * on the slot order of a {@link ReorderEngine}, the dragged child is drawn as a
+ * pooled snapshot, and the children are reordered once, after the drop has
+ * settled.
+ * <p>
+ * Every visible child has an extent of one cell in the engine, so a slot's
+ * edge is the cell it starts at. The cell under the dragged child is found
+ * arithmetically from the cell size and its slot by binary search over those
+ * edges, so hit testing never scans the children. Every child displaced by a
+ * move is animated from one shared frame callback.
+ */
+public class DragGridLayout extends ViewGroup {
+    private static final String TAG = DragGridLayout.class.getSimpleName();
+    private static final int INVALID_POINTER_ID = -1;
+    private final DragItem mDragItem;
+    private final int mSlop;
+    private final int mSwapHysteresis;
+    private int mDownY = -1;
+    private int mDownX = -1;
+    private int mActivePointerId = INVALID_POINTER_ID;
+    private final HashMap<View, DraggableChild> mDraggableChildren = new HashMap<>();
+    private final SnapshotPool mSnapshotPool = new SnapshotPool();
+    private final FrameAnimator mDisplacementAnimator = new FrameAnimator();
+    private final SettleAnimator mSettleAnimator = new SettleAnimator() {
+        @Override
+        void onFrame(int offsetX, int offsetY) {
+            mDragItem.setOffset(offsetX, offsetY);
+        }
+
+        @Override
+        void onSettled(int offsetX, int offsetY) {
+            mDragItem.stopDetecting();
+        }
+    };
+    private DragLinearLayout.OnReorderListener mReorderListener;
+    private int mColumnCount = 3;
+    private int mCellWidth;
+    private int mCellHeight;
+    private int mCellCount;
+    private final ReorderEngine mEngine = new ReorderEngine();
+    private View[] mOrderedViews = new View[0];
+    private View[] mDisplacedViews = new View[0];
+    private int[] mDisplacedStartX = new int[0];
+    private int[] mDisplacedStartY = new int[0];
+    private final View[] mDragViews = new View[1];
+
+    public DragGridLayout(Context context) {
+        this(context, null);
+    }
+
+    public DragGridLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mDragItem = new DragItem();
+        mSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        final Resources resources = getResources();
+        mSwapHysteresis = (int) (ReorderEngine.SWAP_HYSTERESIS_DP * resources.getDisplayMetrics().density + 0.5f);
+    }
+
+    private class DragItem {
+        private View mView;
+        private int mStartVisibility;
+        private final OverlaySnapshot mShadow = new OverlaySnapshot(getContext());
+        private int mPosition;
+        private int mStartPosition;
+        private int mStartLeft;
+        private int mStartTop;
+        private int mOffsetX;
+        private int mOffsetY;
+        private boolean mDetecting;
+        private boolean mDragging;
+
+        DragItem() {
+            stopDetecting();
+        }
+
+        void startDetectingOnPossibleDrag(View view, int position) {
+            mView = view;
+            mStartVisibility = view.getVisibility();
+            mPosition = position;
+            mStartPosition = position;
+            mStartLeft = view.getLeft();
+            mStartTop = view.getTop();
+            mOffsetX = 0;
+            mOffsetY = 0;
+            mDetecting = true;
+        }
+
+        void onDragStart() {
+            mShadow.show(getOverlay(), getDragDrawable(mView));
+            mView.setVisibility(View.INVISIBLE);
+            mDragging = true;
+        }
+
+        /**
+         * Moves the overlay shadow by translating it; nothing is redrawn.
+         */
+        void setOffset(int offsetX, int offsetY) {
+            mOffsetX = offsetX;
+            mOffsetY = offsetY;
+            mShadow.setTranslation(offsetX, offsetY);
+        }
+
+        /**
+         * Offset of the dragged child's current cell from where the drag began.
+         */
+        int targetOffsetX() {
+            return mView.getLeft() - mStartLeft;
+        }
+
+        int targetOffsetY() {
+            return mView.getTop() - mStartTop;
+        }
+
+        void stopDetecting() {
+            mDetecting = false;
+            mDragging = false;
+            commitSlotOrder();
+            final int startPosition = mStartPosition;
+            final int endPosition = null != mView ? indexOfChild(mView) : -1;
+            final int[] moves = startPosition >= 0 && null != mReorderListener ? mEngine.pendingMoves() : null;
+            mEngine.end();
+            if (null != mView) mView.setVisibility(mStartVisibility);
+            mView = null;
+            mStartVisibility = -1;
+            if (mShadow.isShowing()) mSnapshotPool.release(mShadow.hide());
+            mPosition = -1;
+            mStartPosition = -1;
+            mStartLeft = -1;
+            mStartTop = -1;
+            mOffsetX = 0;
+            mOffsetY = 0;
+            mSettleAnimator.cancel();
+            if (null != moves && moves.length > 0) mReorderListener.onReorder(startPosition, endPosition, moves);
+        }
+    }
+
+    private class DraggableChild extends DisplacedChild {
+        private final View mDragHandle;
+
+        DraggableChild(View view, View dragHandle) {
+            super(view, mDisplacementAnimator);
+            mDragHandle = dragHandle;
+            dragHandle.setOnTouchListener(new DragHandleOnTouchListener(view));
+        }
+
+        void release() {
+            endAnimation();
+            mDragHandle.setOnTouchListener(null);
+        }
+    }
+
+    private class DragHandleOnTouchListener implements OnTouchListener {
+        private final View view;
+
+        DragHandleOnTouchListener(final View view) {
+            this.view = view;
+        }
+
+        @SuppressLint("ClickableViewAccessibility")
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            if (MotionEvent.ACTION_DOWN == MotionEventCompat.getActionMasked(event)) {
+                startDetectingDrag(view);
+            }
+            return false;
+        }
+    }
+
+    public void setColumnCount(int columnCount) {
+        if (columnCount <= 0) {
+            throw new IllegalArgumentException("Column count must be positive.");
+        }
+        if (mColumnCount != columnCount) {
+            mColumnCount = columnCount;
+            requestLayout();
+        }
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public void addDragView(View child, View dragHandle) {
+        addView(child);
+        setViewDraggable(child, dragHandle);
+    }
+
+    public void setViewDraggable(View child, View dragHandle) {
+        if (null == child || null == dragHandle) {
+            throw new IllegalArgumentException(
+                    "Draggable children and their drag handles must not be null.");
+        }
+
+        if (this == child.getParent()) {
+            final DraggableChild previous = mDraggableChildren.put(child, new DraggableChild(child, dragHandle));
+            if (null != previous && previous.mDragHandle != dragHandle) {
+                previous.mDragHandle.setOnTouchListener(null);
+            }
+        } else {
+            Log.e(TAG, child + " is not a child, cannot make draggable.");
+        }
+    }
+
+    public void setOnReorderListener(DragLinearLayout.OnReorderListener reorderListener) {
+        mReorderListener = reorderListener;
+    }
+
+    /**
+     * Every cell is one column wide. Cell height is the tallest child's height;
+     * children with a MATCH_PARENT height are made square.
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        mCellWidth = Math.max(0, (width - getPaddingLeft() - getPaddingRight()) / mColumnCount);
+        final int childWidthSpec = MeasureSpec.makeMeasureSpec(mCellWidth, MeasureSpec.EXACTLY);
+        int cellHeight = 0;
+        int cellCount = 0;
+        for (int i = 0; i < getChildCount(); i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE) continue;
+            final int lpHeight = child.getLayoutParams().height;
+            final int childHeightSpec = lpHeight >= 0
+                    ? MeasureSpec.makeMeasureSpec(lpHeight, MeasureSpec.EXACTLY)
+                    : LayoutParams.MATCH_PARENT == lpHeight
+                    ? MeasureSpec.makeMeasureSpec(mCellWidth, MeasureSpec.EXACTLY)
+                    : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            child.measure(childWidthSpec, childHeightSpec);
+            cellHeight = Math.max(cellHeight, child.getMeasuredHeight());
+            cellCount++;
+        }
+        mCellHeight = cellHeight;
+        final int rows = (cellCount + mColumnCount - 1) / mColumnCount;
+        final int height = getPaddingTop() + rows * cellHeight + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    /**
+     * Lays the children out in slot order, so a layout pass in the middle of a
+     * drag keeps the drag-time order.
+     */
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final int count = getChildCount();
+        if (!mDragItem.mDetecting || mEngine.mCount != count) mEngine.begin(count);
+        measureCells();
+        for (int slot = 0; slot < count; slot++) {
+            final View child = getChildAt(mEngine.mSlotOrder[slot]);
+            if (child.getVisibility() == GONE) continue;
+            final int cell = mEngine.mSlotEdges[slot];
+            final int left = cellLeft(cell);
+            final int top = cellTop(cell);
+            child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+        }
+    }
+
+    private void ensureSlotCapacity(int count) {
+        if (mOrderedViews.length >= count) return;
+        mOrderedViews = new View[count];
+        mDisplacedViews = new View[count];
+        mDisplacedStartX = new int[count];
+        mDisplacedStartY = new int[count];
+    }
+
+    /**
+     * Gives every child an extent of one cell, or none if it is GONE, so the
+     * engine's slot edges are the cells the slots start at.
+     */
+    private void measureCells() {
+        final int count = mEngine.mCount;
+        for (int i = 0; i < count; i++) mEngine.setExtent(i, getChildAt(i).getVisibility() == GONE ? 0 : 1);
+        mEngine.setStartEdge(0);
+        mEngine.updateEdges(0, count - 1);
+        mCellCount = mEngine.mSlotEdges[count];
+    }
+
+    private int cellLeft(int cell) {
+        return getPaddingLeft() + (cell % mColumnCount) * mCellWidth;
+    }
+
+    private int cellTop(int cell) {
+        return getPaddingTop() + (cell / mColumnCount) * mCellHeight;
+    }
+
+    public void startDetectingDrag(View child) {
+        if (mDragItem.mDetecting)
+            return;
+
+        final DraggableChild draggableChild = mDraggableChildren.get(child);
+        final int position = indexOfChild(child);
+        if (null != draggableChild && position >= 0) {
+            draggableChild.endAnimation();
+            beginSlotOrder();
+            mDragItem.startDetectingOnPossibleDrag(child, position);
+        }
+    }
+
+    private void beginSlotOrder() {
+        final int count = getChildCount();
+        ensureSlotCapacity(count);
+        mEngine.begin(count);
+        for (int i = 0; i < count; i++) mEngine.setDraggable(i, mDraggableChildren.containsKey(getChildAt(i)));
+        mEngine.buildDraggableTables();
+        measureCells();
+    }
+
+    private void startDrag() {
+        mDragItem.onDragStart();
+        requestDisallowInterceptTouchEvent(true);
+    }
+
+    private void onDrag(int offsetX, int offsetY) {
+        mDragItem.setOffset(offsetX, offsetY);
+        final int target = findTargetSlot();
+        if (target != mDragItem.mPosition) moveDraggedToSlot(target);
+    }
+
+    /**
+     * Returns the slot of the draggable child whose cell holds the centre of the
+     * dragged child, or the dragged child's own slot. The centre has to be a
+     * little way inside a cell before that cell counts as hit.
+     */
+    private int findTargetSlot() {
+        final int position = mDragItem.mPosition;
+        if (mCellWidth <= 0 || mCellHeight <= 0 || 0 == mCellCount) return position;
+        final View view = mDragItem.mView;
+        final int centerX = mDragItem.mStartLeft + mDragItem.mOffsetX + view.getWidth() / 2 - getPaddingLeft();
+        final int centerY = mDragItem.mStartTop + mDragItem.mOffsetY + view.getHeight() / 2 - getPaddingTop();
+        final int column = Math.max(0, Math.min(mColumnCount - 1, centerX / mCellWidth));
+        final int row = Math.max(0, Math.min((mCellCount - 1) / mColumnCount, centerY / mCellHeight));
+        final int hysteresisX = Math.min(mSwapHysteresis, mCellWidth / 4);
+        final int hysteresisY = Math.min(mSwapHysteresis, mCellHeight / 4);
+        final int inCellX = centerX - column * mCellWidth;
+        final int inCellY = centerY - row * mCellHeight;
+        if (inCellX < hysteresisX || inCellX > mCellWidth - hysteresisX
+                || inCellY < hysteresisY || inCellY > mCellHeight - hysteresisY) {
+            return position;
+        }
+        final int cell = Math.min(mCellCount - 1, row * mColumnCount + column);
+        // the only slot whose one-cell extent straddles the cell's middle
+        final int slot = mEngine.firstSlotWithMidAfter(cell);
+        return mEngine.mDraggable[mEngine.mSlotOrder[slot]] ? slot : position;
+    }
+
+    /**
+     * Moves the dragged child to the target slot past every draggable child in
+     * between, each of which shifts one draggable slot back; non-draggable
+     * children keep their cells. The displaced children are animated together.
+     */
+    private void moveDraggedToSlot(int target) {
+        final int from = mDragItem.mPosition;
+        final int displaced = mEngine.moveTo(from, target);
+        for (int i = 0; i < displaced; i++) {
+            final View switchView = getChildAt(mEngine.mDisplaced[i]);
+            mDisplacedViews[i] = switchView;
+            mDisplacedStartX[i] = switchView.getLeft() + Math.round(switchView.getTranslationX());
+            mDisplacedStartY[i] = switchView.getTop() + Math.round(switchView.getTranslationY());
+        }
+        final int first = Math.min(from, target);
+        final int last = Math.max(from, target);
+        for (int slot = first; slot <= last; slot++) {
+            final View child = getChildAt(mEngine.mSlotOrder[slot]);
+            if (child.getVisibility() == GONE) continue;
+            final int cell = mEngine.mSlotEdges[slot];
+            child.offsetLeftAndRight(cellLeft(cell) - child.getLeft());
+            child.offsetTopAndBottom(cellTop(cell) - child.getTop());
+        }
+        mDragItem.mPosition = target;
+
+        for (int i = 0; i < displaced; i++) {
+            final View view = mDisplacedViews[i];
+            final DraggableChild draggableChild = mDraggableChildren.get(view);
+            if (null != draggableChild) {
+                draggableChild.animateFrom(mDisplacedStartX[i] - view.getLeft(), mDisplacedStartY[i] - view.getTop());
+            }
+            mDisplacedViews[i] = null;
+        }
+        invalidate();
+    }
+
+    private void commitSlotOrder() {
+        if (!mEngine.mDirty) return;
+        final int count = mEngine.mCount;
+        for (int i = 0; i < count; i++) mOrderedViews[i] = getChildAt(mEngine.mSlotOrder[i]);
+        for (int i = 0; i < count; i++) {
+            final View child = mOrderedViews[i];
+            if (getChildAt(i) != child) {
+                final ViewGroup.LayoutParams lp = child.getLayoutParams();
+                detachViewFromParent(child);
+                attachViewToParent(child, i, lp);
+            }
+            mOrderedViews[i] = null;
+        }
+        mEngine.commit();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Drops the drag when a child is added or removed: the cells the drag has
+     * moved no longer line up with the children, so the children keep the
+     * order they had before the drag.
+     */
+    private void abortDrag() {
+        mEngine.discard();
+        mDragItem.mStartPosition = -1;
+        mDragItem.stopDetecting();
+        requestLayout();
+    }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        if (mDragItem.mDetecting) abortDrag();
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        if (mDragItem.mDetecting) abortDrag();
+        final DraggableChild draggableChild = mDraggableChildren.remove(child);
+        if (null != draggableChild) draggableChild.release();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mDragItem.mDetecting) mDragItem.stopDetecting();
+        mDisplacementAnimator.clear();
+        mSnapshotPool.clear();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        switch (MotionEventCompat.getActionMasked(event)) {
+            case MotionEvent.ACTION_DOWN: {
+                if (mDragItem.mDetecting) return false;
+                mDownY = (int) MotionEventCompat.getY(event, 0);
+                mDownX = (int) MotionEventCompat.getX(event, 0);
+                mActivePointerId = MotionEventCompat.getPointerId(event, 0);
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                if (!mDragItem.mDetecting || mDragItem.mDragging) return false;
+                if (INVALID_POINTER_ID == mActivePointerId) break;
+                final int pointerIndex = event.findPointerIndex(mActivePointerId);
+                final float dx = MotionEventCompat.getX(event, pointerIndex) - mDownX;
+                final float dy = MotionEventCompat.getY(event, pointerIndex) - mDownY;
+                if (dx * dx + dy * dy > mSlop * mSlop) {
+                    startDrag();
+                    return true;
+                }
+                return false;
+            }
+            case MotionEvent.ACTION_POINTER_UP: {
+                final int pointerIndex = MotionEventCompat.getActionIndex(event);
+                final int pointerId = MotionEventCompat.getPointerId(event, pointerIndex);
+
+                if (pointerId != mActivePointerId)
+                    break;
+            }
+            case MotionEvent.ACTION_CANCEL:
+            case MotionEvent.ACTION_UP: {
+                onTouchEnd();
+                if (mDragItem.mDetecting && !mDragItem.mDragging && !mSettleAnimator.isRunning()) {
+                    mDragItem.stopDetecting();
+                }
+                break;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onTouchEvent(@NonNull MotionEvent event) {
+        switch (MotionEventCompat.getActionMasked(event)) {
+            case MotionEvent.ACTION_DOWN: {
+                if (!mDragItem.mDetecting || mSettleAnimator.isRunning()) return false;
+                startDrag();
+                return true;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                if (!mDragItem.mDragging) break;
+                if (INVALID_POINTER_ID == mActivePointerId) break;
+                final int pointerIndex = event.findPointerIndex(mActivePointerId);
+                final int x = (int) MotionEventCompat.getX(event, pointerIndex);
+                final int y = (int) MotionEventCompat.getY(event, pointerIndex);
+                onDrag(x - mDownX, y - mDownY);
+                return true;
+            }
+            case MotionEvent.ACTION_POINTER_UP: {
+                final int pointerIndex = MotionEventCompat.getActionIndex(event);
+                final int pointerId = MotionEventCompat.getPointerId(event, pointerIndex);
+                if (pointerId != mActivePointerId)
+                    break;
+            }
+            case MotionEvent.ACTION_CANCEL:
+            case MotionEvent.ACTION_UP: {
+                onTouchEnd();
+                if (mDragItem.mDragging) {
+                    mDragItem.mDragging = false;
+                    mSettleAnimator.start(mDragItem.mOffsetX, mDragItem.mOffsetY, 0,
+                            mDragItem.targetOffsetX(), mDragItem.targetOffsetY());
+                } else if (mDragItem.mDetecting && !mSettleAnimator.isRunning()) {
+                    mDragItem.stopDetecting();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onTouchEnd() {
+        mDownY = -1;
+        mDownX = -1;
+        mActivePointerId = INVALID_POINTER_ID;
+    }
+
+    private BitmapDrawable getDragDrawable(View view) {
+        final Rect bounds = new Rect(view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
+        mDragViews[0] = view;
+        final Bitmap bitmap = mSnapshotPool.render(mDragViews, 1, bounds);
+        mDragViews[0] = null;
+        final BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
+        drawable.setFilterBitmap(true);
+        drawable.setBounds(bounds);
+        return drawable;
+    }
+
+    /**
+     * Caps the size of a single drag snapshot in bytes; the pool of reusable
+     * snapshots is allowed to hold twice this amount.
+     */
+    public void setDragSnapshotBudget(int maxBytes) {
+        mSnapshotPool.setBudget(maxBytes);
+    }
+}
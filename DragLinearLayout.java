@@ -8,36 +8,162 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.MotionEvent;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.core.view.MotionEventCompat;
+import androidx.core.view.ViewCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DragLinearLayout extends LinearLayout {
     private static final String TAG = DragLinearLayout.class.getSimpleName();
-    private static final long NOMINAL_SWITCH_DURATION = 150;
-    private static final long MIN_SWITCH_DURATION = NOMINAL_SWITCH_DURATION;
-    private static final long MAX_SWITCH_DURATION = NOMINAL_SWITCH_DURATION * 2;
-    private static final float NOMINAL_DISTANCE = 20;
-    private final float mNominalDistanceScaled;
+    private static final long CHANGE_FADE_NANOS = 150000000L;
+    private static final float LIVE_DRAG_ELEVATION = 8;
+    private static final float DEFAULT_ITEM_EXTENT = 48;
+    private static final float AUTO_SCROLL_EDGE = 48;
+    private static final float AUTO_SCROLL_MAX_VELOCITY = 1200;
+    private static final float AUTO_SCROLL_MAX_STEP = 24;
+    private static final long MAX_AUTO_SCROLL_FRAME_NANOS = 33000000L;
+    private static final int DRAG_SAMPLE_COUNT = 8;
+    private static final int MAX_PREFETCH_EVICTIONS = 3;
+    private static final long DRAG_VELOCITY_WINDOW_MILLIS = 50;
+    private static final long DRAG_PREDICTION_MILLIS = 16;
+    private static final float JANK_FRAME_FACTOR = 1.5f;
+    private final float mLiveDragElevationScaled;
     private final DragItem mDragItem;
     private final int mSlop;
     private static final int INVALID_POINTER_ID = -1;
     private int mDownY = -1;
     private int mDownX = -1;
+    private int mLastMotionY = -1;
+    private int mLastMotionX = -1;
     private int mActivePointerId = INVALID_POINTER_ID;
     private LayoutTransition mLayoutTransition;
-    private final SparseArray<DraggableChild> mDraggableChildren;
+    private final HashMap<View, DraggableChild> mDraggableChildren;
     private boolean mIsLongClickDraggable = false;
     private ILongClickToDragListener mClickToDragListener;
     private boolean mIsEnterLongClick = false;
     private LongClickDragListener mLongClickDragListener = new LongClickDragListener();
+    private final SnapshotPool mSnapshotPool = new SnapshotPool();
+    private final SnapshotPrefetcher mSnapshotPrefetcher = new SnapshotPrefetcher();
+    private boolean mLiveViewDrag = false;
+    private boolean mDeferredReorder = false;
+    private boolean mChangeAnimations = false;
+    private boolean mChangeAnimationsSuppressed = false;
+    private final HashMap<View, ChangeAnimation> mRunningChanges = new HashMap<>();
+    private final ReorderEngine mEngine = new ReorderEngine();
+    private View[] mOrderedViews = new View[0];
+    private View[] mEngineChildren = new View[0];
+    private boolean[] mSelectedChildren = new boolean[0];
+    private View[] mDisplacedViews = new View[0];
+    private float[] mDisplacedStarts = new float[0];
+    private OnReorderListener mReorderListener;
+    private final int mSwapHysteresis;
+    private final int mAutoScrollEdge;
+    private final int mAutoScrollMaxVelocity;
+    private final int mAutoScrollMaxStep;
+    private int mDrawingDragIndex = -1;
+    private DragCoordinator mDragCoordinator;
+    private boolean mReceiving = false;
+    private int mReceiveSlot = -1;
+    private int mReceiveExtent = 0;
+    private View[] mPendingMoveViews = new View[0];
+    private float[] mPendingMoveStarts = new float[0];
+    private int mPendingMoveCount = 0;
+    private final HashMap<View, KeyedItem> mKeyedItems = new HashMap<>();
+    private ItemBinder<?> mItemBinder;
+    private List<?> mPendingItems;
+    private ItemBinder<?> mPendingItemBinder;
+    private final Runnable mPendingItemsUpdate = new Runnable() {
+        @Override
+        public void run() {
+            if (null == mPendingItems || mDragItem.mDetecting || mReceiving) return;
+            final List<?> items = mPendingItems;
+            final ItemBinder<?> binder = mPendingItemBinder;
+            mPendingItems = null;
+            mPendingItemBinder = null;
+            submitItemsUnchecked(items, binder);
+        }
+    };
+    private final AutoScroller mAutoScroller = new AutoScroller();
+    private final DragFrameCoalescer mDragFrameCoalescer = new DragFrameCoalescer();
+    private final SettleAnimator mSettleAnimator = new SettleAnimator() {
+        @Override
+        void onFrame(int position, int crossPosition) {
+            mDragItem.mCrossOffset = crossPosition;
+            mDragItem.setTotalOffset(position);
+        }
+
+        @Override
+        void onSettled(int position, int crossPosition) {
+            mDragItem.mCrossOffset = crossPosition;
+            mDragItem.setTotalOffset(position);
+            mDragItem.stopDetecting();
+            restoreLayoutTransition();
+        }
+    };
+    private final FrameAnimator mDisplacementAnimator = new FrameAnimator();
+    private final MetricsRecorder mMetricsRecorder = new MetricsRecorder();
+    private DragMetricsListener mDragMetricsListener;
+    private DragTraceListener mDragTraceListener;
+    private DragTrace mDragTrace;
+    private boolean mDragPrediction = false;
+    private Adapter mAdapter;
+    private View mLeadingSpacer;
+    private View mTrailingSpacer;
+    private int mFirstPosition = 0;
+    private int mLastPosition = 0;
+    private boolean mAdapterWindowGrown = false;
+    private int[] mItemExtents = new int[0];
+    private int[] mItemOffsets = new int[1];
+    private int mEstimatedItemExtent;
+    private boolean mItemExtentEstimated = false;
+    private boolean mAdapterChangePending = false;
+    private final SparseArray<ArrayList<View>> mRecycledViews = new SparseArray<>();
+    private final HashMap<View, Integer> mAdapterViewTypes = new HashMap<>();
+    private final Rect mVisibleRect = new Rect();
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    updateAdapterWindow(false);
+                }
+            };
+    private boolean mDragGroupRemoved = false;
+    private final Runnable mFinishDragAfterChange = new Runnable() {
+        @Override
+        public void run() {
+            finishDragAfterChange();
+        }
+    };
+    private final Runnable mAdapterExtentsUpdate = new Runnable() {
+        @Override
+        public void run() {
+            updateAdapterOffsets();
+            updateAdapterWindow(false);
+        }
+    };
 
     public DragLinearLayout(Context context) {
         this(context, null);
@@ -45,19 +171,27 @@ public class DragLinearLayout extends LinearLayout {
 
     public DragLinearLayout(Context context, AttributeSet attrs) {
         super(context, attrs);
-        mDraggableChildren = new SparseArray<>();
+        mDraggableChildren = new HashMap<>();
         mDragItem = new DragItem();
         ViewConfiguration vc = ViewConfiguration.get(context);
         mSlop = vc.getScaledTouchSlop();
         final Resources resources = getResources();
-        mNominalDistanceScaled = (int) (NOMINAL_DISTANCE * resources.getDisplayMetrics().density + 0.5f);
+        mLiveDragElevationScaled = LIVE_DRAG_ELEVATION * resources.getDisplayMetrics().density;
+        mSwapHysteresis = (int) (ReorderEngine.SWAP_HYSTERESIS_DP * resources.getDisplayMetrics().density + 0.5f);
+        mEstimatedItemExtent = (int) (DEFAULT_ITEM_EXTENT * resources.getDisplayMetrics().density + 0.5f);
+        mAutoScrollEdge = (int) (AUTO_SCROLL_EDGE * resources.getDisplayMetrics().density + 0.5f);
+        mAutoScrollMaxVelocity = (int) (AUTO_SCROLL_MAX_VELOCITY * resources.getDisplayMetrics().density + 0.5f);
+        mAutoScrollMaxStep = (int) (AUTO_SCROLL_MAX_STEP * resources.getDisplayMetrics().density + 0.5f);
     }
 
     private class DragItem {
         private View mView;
         private int mStartVisibility;
-        private BitmapDrawable mBitmapDrawable;
+        private final OverlaySnapshot mShadow = new OverlaySnapshot(getContext());
+        private final int[] mShadowLocation = new int[2];
+        private int mCrossOffset;
         private int mPosition;
+        private int mStartPosition;
         private int mStartTop;
         private int mHeight;
         private int mTotalDragOffset;
@@ -65,9 +199,13 @@ public class DragLinearLayout extends LinearLayout {
         private int mStartLeft;
         private int mWidth;
         private int mTargetLeftOffset;
-        private ValueAnimator mSettleAnimation;
         private boolean mDetecting;
         private boolean mDragging;
+        private boolean mLive;
+        private View[] mGroupViews = new View[1];
+        private int[] mGroupVisibilities = new int[1];
+        private float[] mGroupTranslationZ = new float[1];
+        private int mGroupSize;
 
         DragItem() {
             stopDetecting();
@@ -76,8 +214,11 @@ public class DragLinearLayout extends LinearLayout {
         void startDetectingOnPossibleDrag(final View view, final int position) {
             this.mView = view;
             this.mStartVisibility = view.getVisibility();
-            this.mBitmapDrawable = getDragDrawable(view);
+            mGroupViews[0] = view;
+            mGroupVisibilities[0] = mStartVisibility;
+            mGroupSize = 1;
             this.mPosition = position;
+            this.mStartPosition = position;
             this.mStartTop = view.getTop();
             this.mHeight = view.getHeight();
             mStartLeft = view.getLeft();
@@ -85,18 +226,48 @@ public class DragLinearLayout extends LinearLayout {
             this.mTotalDragOffset = 0;
             this.mTargetTopOffset = 0;
             this.mTargetLeftOffset = 0;
-            this.mSettleAnimation = null;
             this.mDetecting = true;
         }
 
         void onDragStart() {
-            mView.setVisibility(View.INVISIBLE);
+            mLive = mLiveViewDrag;
+            if (mLive) {
+                for (int i = 0; i < mGroupSize; i++) {
+                    final View view = mGroupViews[i];
+                    mGroupTranslationZ[i] = ViewCompat.getTranslationZ(view);
+                    ViewCompat.setTranslationZ(view, mGroupTranslationZ[i] + mLiveDragElevationScaled);
+                }
+                setChildrenDrawingOrderEnabled(true);
+            } else {
+                // a coordinated drag may leave this layout, so its shadow is drawn over the whole window
+                final View root = getRootView();
+                mShadow.show(null != mDragCoordinator && root instanceof ViewGroup
+                        ? ((ViewGroup) root).getOverlay() : getOverlay(), getDragDrawable(mGroupViews, mGroupSize));
+                updateShadowPosition();
+                for (int i = 0; i < mGroupSize; i++) mGroupViews[i].setVisibility(View.INVISIBLE);
+            }
             this.mDragging = true;
         }
 
         void setTotalOffset(int offset) {
             mTotalDragOffset = offset;
             updateTargetLocation();
+            if (mShadow.isShowing()) updateShadowPosition();
+        }
+
+        /**
+         * Moves the overlay shadow by the drag offset. Only the shadow's
+         * translation changes, so a drag frame re-records no display list.
+         */
+        private void updateShadowPosition() {
+            int dx = getOrientation() == VERTICAL ? mCrossOffset : mTotalDragOffset;
+            int dy = getOrientation() == VERTICAL ? mTotalDragOffset : mCrossOffset;
+            if (null != mDragCoordinator) {
+                getLocationInWindow(mShadowLocation);
+                dx += mShadowLocation[0];
+                dy += mShadowLocation[1];
+            }
+            mShadow.setTranslation(dx, dy);
         }
 
         void updateTargetLocation() {
@@ -105,31 +276,100 @@ public class DragLinearLayout extends LinearLayout {
             } else {
                 updateTargetLeft();
             }
+            if (mLive) {
+                for (int i = 0; i < mGroupSize; i++) {
+                    mGroupViews[i].setTranslationY(mTargetTopOffset);
+                    mGroupViews[i].setTranslationX(mTargetLeftOffset);
+                }
+            }
         }
 
         private void updateTargetLeft() {
-            mTargetLeftOffset = mStartLeft - mView.getLeft() + mTotalDragOffset;
+            mTargetLeftOffset = mStartLeft - mGroupViews[0].getLeft() + mTotalDragOffset;
         }
 
         private void updateTargetTop() {
-            mTargetTopOffset = mStartTop - mView.getTop() + mTotalDragOffset;
+            mTargetTopOffset = mStartTop - mGroupViews[0].getTop() + mTotalDragOffset;
+        }
+
+        /**
+         * Turns the drag into a group drag of the given views, which must occupy
+         * the contiguous slots starting at {@code position} in slot order.
+         */
+        void setGroup(View[] views, int count, int position) {
+            if (mGroupViews.length < count) {
+                mGroupViews = new View[count];
+                mGroupVisibilities = new int[count];
+                mGroupTranslationZ = new float[count];
+            }
+            final boolean vertical = getOrientation() == VERTICAL;
+            for (int i = 0; i < count; i++) {
+                mGroupViews[i] = views[i];
+                mGroupVisibilities[i] = views[i].getVisibility();
+            }
+            mGroupSize = count;
+            mPosition = position;
+            final View first = mGroupViews[0];
+            final View last = mGroupViews[count - 1];
+            mStartTop = first.getTop();
+            mStartLeft = first.getLeft();
+            mHeight = vertical ? last.getBottom() - first.getTop() : first.getHeight();
+            mWidth = vertical ? first.getWidth() : last.getRight() - first.getLeft();
         }
 
         void onDragStop() {
             this.mDragging = false;
         }
 
+        boolean contains(View view) {
+            for (int i = 0; i < mGroupSize; i++) {
+                if (mGroupViews[i] == view) return true;
+            }
+            return false;
+        }
+
+        int targetOffset() {
+            return getOrientation() == VERTICAL ? mTargetTopOffset : mTargetLeftOffset;
+        }
+
         boolean settling() {
-            return null != mSettleAnimation;
+            return mSettleAnimator.isRunning();
         }
 
         void stopDetecting() {
             this.mDetecting = false;
-            if (null != mView) mView.setVisibility(mStartVisibility);
+            mDragGroupRemoved = false;
+            removeCallbacks(mFinishDragAfterChange);
+            commitSlotOrder();
+            final int startPosition = mStartPosition;
+            final int endPosition = null != mView ? indexOfChild(mView) : -1;
+            final int[] moves = startPosition >= 0 && (null != mReorderListener || null != mAdapter)
+                    ? mEngine.pendingMoves() : null;
+            mEngine.end();
+            Arrays.fill(mEngineChildren, null);
+            if (null != mAdapter && startPosition >= 0) onAdapterDragFinished(moves);
+            for (int i = 0; i < mGroupSize; i++) {
+                final View view = mGroupViews[i];
+                view.setVisibility(mGroupVisibilities[i]);
+                if (mLive) {
+                    view.setTranslationX(0);
+                    view.setTranslationY(0);
+                    ViewCompat.setTranslationZ(view, mGroupTranslationZ[i]);
+                }
+                mGroupViews[i] = null;
+            }
+            mGroupSize = 0;
+            if (mLive) {
+                setChildrenDrawingOrderEnabled(false);
+                mLive = false;
+            }
             mView = null;
             mStartVisibility = -1;
-            mBitmapDrawable = null;
+            if (mShadow.isShowing()) mSnapshotPool.release(mShadow.hide());
+            mCrossOffset = 0;
+            if (null != mDragCoordinator) mDragCoordinator.onDragEnded(DragLinearLayout.this);
             mPosition = -1;
+            mStartPosition = -1;
             mStartTop = -1;
             mHeight = -1;
             mStartLeft = -1;
@@ -137,18 +377,562 @@ public class DragLinearLayout extends LinearLayout {
             mTotalDragOffset = 0;
             mTargetTopOffset = 0;
             mTargetLeftOffset = 0;
-            if (null != mSettleAnimation) mSettleAnimation.end();
-            mSettleAnimation = null;
+            mSettleAnimator.cancel();
+            if (null != moves && moves.length > 0 && null != mReorderListener) {
+                mReorderListener.onReorder(startPosition, endPosition, moves);
+            }
+            mMetricsRecorder.onDetectStop();
+            final DragTrace trace = mDragTrace;
+            mDragTrace = null;
+            if (null != trace && startPosition >= 0 && null != mDragTraceListener) {
+                mDragTraceListener.onDragTrace(trace);
+            }
+            schedulePendingItems();
+        }
+    }
+
+    /**
+     * Renders snapshots of the visible draggable children while the main thread
+     * is idle, one child per idle pass, so that starting a drag finds its
+     * snapshot ready. Snapshots are kept in least-recently-used order within a
+     * byte budget and are dropped as soon as their child redraws; a child whose
+     * snapshot keeps being dropped is no longer prefetched.
+     */
+    private class SnapshotPrefetcher implements MessageQueue.IdleHandler {
+        private final LinkedHashMap<View, Bitmap> mSnapshots = new LinkedHashMap<>(16, 0.75f, true);
+        private final View[] mViews = new View[1];
+        private final Rect mBounds = new Rect();
+        private int mMaxBytes;
+        private int mBytes;
+        private boolean mScheduled;
+
+        void setMaxBytes(int maxBytes) {
+            mMaxBytes = maxBytes;
+            trimTo(maxBytes, false);
+            if (maxBytes > 0) {
+                schedule();
+            } else {
+                unschedule();
+            }
+        }
+
+        void schedule() {
+            if (mScheduled || 0 == mMaxBytes || !isAttachedToWindow()) return;
+            mScheduled = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+
+        void unschedule() {
+            if (mScheduled) Looper.myQueue().removeIdleHandler(this);
+            mScheduled = false;
+        }
+
+        /**
+         * Hands the cached snapshot of the child over to the caller, or returns
+         * null on a miss.
+         */
+        Bitmap take(View child) {
+            final Bitmap bitmap = mSnapshots.remove(child);
+            if (null != bitmap) mBytes -= bitmap.getAllocationByteCount();
+            return bitmap;
+        }
+
+        void invalidate(View child) {
+            final Bitmap bitmap = take(child);
+            if (null == bitmap) return;
+            mSnapshotPool.release(bitmap);
+            final DraggableChild draggableChild = mDraggableChildren.get(child);
+            if (null != draggableChild) draggableChild.mPrefetchEvictions++;
+            schedule();
+        }
+
+        void clear() {
+            unschedule();
+            trimTo(0, false);
+        }
+
+        @Override
+        public boolean queueIdle() {
+            if (mDragItem.mDetecting) return true;
+            final View child = nextUncachedChild();
+            if (null == child) {
+                mScheduled = false;
+                return false;
+            }
+            Trace.beginSection("DragLinearLayout#prefetchSnapshot");
+            try {
+                mViews[0] = child;
+                mBounds.set(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+                final Bitmap bitmap = mSnapshotPool.render(mViews, 1, mBounds);
+                mViews[0] = null;
+                final int bytes = bitmap.getAllocationByteCount();
+                trimTo(mMaxBytes - bytes, true);
+                if (mBytes + bytes > mMaxBytes) {
+                    // the visible children do not all fit; stop until something changes
+                    mSnapshotPool.release(bitmap);
+                    mScheduled = false;
+                    return false;
+                }
+                mSnapshots.put(child, bitmap);
+                mBytes += bytes;
+                return true;
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        private View nextUncachedChild() {
+            if (!getLocalVisibleRect(mBounds)) return null;
+            for (int i = 0; i < getChildCount(); i++) {
+                final View child = getChildAt(i);
+                if (child.getVisibility() != VISIBLE || child.getWidth() <= 0 || child.getHeight() <= 0) continue;
+                final DraggableChild draggableChild = mDraggableChildren.get(child);
+                if (null == draggableChild || draggableChild.mPrefetchEvictions >= MAX_PREFETCH_EVICTIONS
+                        || mSnapshots.containsKey(child)) {
+                    continue;
+                }
+                if (mBounds.intersects(child.getLeft(), child.getTop(), child.getRight(), child.getBottom())) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Evicts least recently used snapshots until at most maxBytes are held,
+         * sparing the children that are on screen if keepVisible is set.
+         */
+        private void trimTo(int maxBytes, boolean keepVisible) {
+            if (keepVisible && !getLocalVisibleRect(mBounds)) keepVisible = false;
+            final Iterator<Map.Entry<View, Bitmap>> entries = mSnapshots.entrySet().iterator();
+            while (mBytes > maxBytes && entries.hasNext()) {
+                final Map.Entry<View, Bitmap> entry = entries.next();
+                final View child = entry.getKey();
+                if (keepVisible && DragLinearLayout.this == child.getParent() && mBounds.intersects(child.getLeft(), child.getTop(),
+                        child.getRight(), child.getBottom())) {
+                    continue;
+                }
+                entries.remove();
+                mBytes -= entry.getValue().getAllocationByteCount();
+                mSnapshotPool.release(entry.getValue());
+            }
+        }
+    }
+
+    private class DraggableChild extends DisplacedChild {
+        private final View mDragHandle;
+        private boolean mSelected;
+        private int mPrefetchEvictions;
+
+        DraggableChild(View view, View dragHandle) {
+            super(view, mDisplacementAnimator);
+            mDragHandle = dragHandle;
+            dragHandle.setOnTouchListener(new DragHandleOnTouchListener(view));
+            dragHandle.setOnLongClickListener(mLongClickDragListener);
+        }
+
+        void release() {
+            endAnimation();
+            mDragHandle.setOnTouchListener(null);
+            mDragHandle.setOnLongClickListener(null);
+        }
+    }
+
+    /**
+     * Animates a change to the children outside of a drag: a child that is not
+     * draggable springs to its new position, an added child fades in and a
+     * removed child fades out as a snapshot drawn in the overlay.
+     */
+    private class ChangeAnimation implements FrameAnimator.Animation {
+        private final View mView;
+        private final OverlaySnapshot mSnapshot;
+        private final Spring mSpring = new Spring(Spring.SWITCH_STIFFNESS);
+        private boolean mVertical = true;
+        private final float mAlpha;
+        private boolean mMoving;
+        private long mFadeNanos = -1;
+
+        ChangeAnimation(View view) {
+            mView = view;
+            mSnapshot = null;
+            mAlpha = view.getAlpha();
+        }
+
+        ChangeAnimation(BitmapDrawable snapshot, float alpha) {
+            mView = null;
+            mSnapshot = new OverlaySnapshot(getContext());
+            mAlpha = alpha;
+            mSnapshot.show(getOverlay(), snapshot);
+            mSnapshot.setAlpha(alpha);
+            mFadeNanos = 0;
+        }
+
+        void moveFrom(float fromTranslation) {
+            mVertical = getOrientation() == VERTICAL;
+            mSpring.mPosition = fromTranslation;
+            mSpring.mTarget = 0;
+            if (!mMoving) mSpring.mVelocity = 0;
+            mMoving = true;
+            setTranslation(fromTranslation);
+        }
+
+        private void setTranslation(float translation) {
+            if (mVertical) {
+                mView.setTranslationY(translation);
+            } else {
+                mView.setTranslationX(translation);
+            }
+        }
+
+        void fadeIn() {
+            mView.setAlpha(0f);
+            mFadeNanos = 0;
+        }
+
+        @Override
+        public boolean step(long frameNanos) {
+            if (mMoving) {
+                mSpring.step(frameNanos);
+                mMoving = !mSpring.isAtRest();
+                setTranslation(mMoving ? mSpring.mPosition : 0f);
+            }
+            if (mFadeNanos >= 0) {
+                mFadeNanos = Math.min(CHANGE_FADE_NANOS, mFadeNanos + frameNanos);
+                final float fraction = (float) mFadeNanos / CHANGE_FADE_NANOS;
+                if (null != mSnapshot) {
+                    mSnapshot.setAlpha(mAlpha * (1 - fraction));
+                } else {
+                    mView.setAlpha(mAlpha * fraction);
+                }
+                if (CHANGE_FADE_NANOS == mFadeNanos) mFadeNanos = -1;
+            }
+            return mMoving || mFadeNanos >= 0;
+        }
+
+        @Override
+        public void end() {
+            if (null != mSnapshot) {
+                mSnapshotPool.release(mSnapshot.hide());
+                return;
+            }
+            mRunningChanges.remove(mView);
+            if (mMoving) setTranslation(0f);
+            mMoving = false;
+            mFadeNanos = -1;
+            mView.setAlpha(mAlpha);
+        }
+    }
+
+    /**
+     * Scrolls the enclosing scroll container while the finger is held near one of
+     * its edges. Runs off Choreographer frame callbacks, at a speed proportional
+     * to how deep the finger is in the edge zone, and feeds the scrolled distance
+     * back into the drag so the dragged item stays under the finger.
+     */
+    private class AutoScroller implements Choreographer.FrameCallback {
+        private final Rect mVisibleRect = new Rect();
+        private View mScrollParent;
+        private boolean mRunning;
+        private long mLastFrameTimeNanos;
+
+        void start() {
+            mScrollParent = findScrollParent();
+        }
+
+        void update() {
+            if (mRunning || null == mScrollParent || 0 == computeVelocity()) return;
+            mRunning = true;
+            mLastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            if (mRunning) Choreographer.getInstance().removeFrameCallback(this);
+            mRunning = false;
+            mScrollParent = null;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            final int velocity = mDragItem.mDragging && null != mScrollParent ? computeVelocity() : 0;
+            if (0 == velocity) {
+                mRunning = false;
+                return;
+            }
+            final long frameNanos = 0 == mLastFrameTimeNanos ? MAX_AUTO_SCROLL_FRAME_NANOS / 2
+                    : Math.min(MAX_AUTO_SCROLL_FRAME_NANOS, frameTimeNanos - mLastFrameTimeNanos);
+            mLastFrameTimeNanos = frameTimeNanos;
+            int step = (int) (velocity * frameNanos / 1000000000L);
+            if (0 == step) step = velocity > 0 ? 1 : -1;
+            step = Math.max(-mAutoScrollMaxStep, Math.min(mAutoScrollMaxStep, step));
+
+            final boolean vertical = getOrientation() == VERTICAL;
+            final int before = vertical ? mScrollParent.getScrollY() : mScrollParent.getScrollX();
+            mScrollParent.scrollBy(vertical ? 0 : step, vertical ? step : 0);
+            final int scrolled = (vertical ? mScrollParent.getScrollY() : mScrollParent.getScrollX()) - before;
+            if (0 == scrolled) {
+                mRunning = false;
+                return;
+            }
+            // bind the items scrolled into view before the drag moves over them
+            updateAdapterWindow(false);
+            if (vertical) {
+                mLastMotionY += scrolled;
+                onDrag(mLastMotionY - mDownY);
+            } else {
+                mLastMotionX += scrolled;
+                onDrag(mLastMotionX - mDownX);
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * Returns the signed scroll velocity in pixels per second for the current
+         * finger position, or 0 outside the edge zones or when the container
+         * cannot scroll any further in that direction.
+         */
+        private int computeVelocity() {
+            if (!getLocalVisibleRect(mVisibleRect)) return 0;
+            final boolean vertical = getOrientation() == VERTICAL;
+            final int start = vertical ? mVisibleRect.top : mVisibleRect.left;
+            final int end = vertical ? mVisibleRect.bottom : mVisibleRect.right;
+            final int position = vertical ? mLastMotionY : mLastMotionX;
+            final int edge = Math.min(mAutoScrollEdge, (end - start) / 4);
+            if (edge <= 0) return 0;
+            final float proximity;
+            final int direction;
+            if (position < start + edge) {
+                proximity = Math.min(1f, (float) (start + edge - position) / edge);
+                direction = -1;
+            } else if (position > end - edge) {
+                proximity = Math.min(1f, (float) (position - (end - edge)) / edge);
+                direction = 1;
+            } else {
+                return 0;
+            }
+            final boolean canScroll = vertical ? mScrollParent.canScrollVertically(direction)
+                    : mScrollParent.canScrollHorizontally(direction);
+            return canScroll ? (int) (direction * proximity * mAutoScrollMaxVelocity) : 0;
+        }
+
+        private View findScrollParent() {
+            final boolean vertical = getOrientation() == VERTICAL;
+            ViewParent parent = getParent();
+            while (parent instanceof View) {
+                final View view = (View) parent;
+                if (vertical ? view.canScrollVertically(1) || view.canScrollVertically(-1)
+                        : view.canScrollHorizontally(1) || view.canScrollHorizontally(-1)) {
+                    return view;
+                }
+                parent = parent.getParent();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Collects drag MotionEvents, historical samples included, and applies them
+     * once per Choreographer frame so high-rate touch panels do not run several
+     * swap checks per displayed frame. The buffered samples give the pointer
+     * velocity used for the optional position prediction.
+     */
+    private class DragFrameCoalescer implements Choreographer.FrameCallback {
+        private final long[] mSampleTimes = new long[DRAG_SAMPLE_COUNT];
+        private final float[] mSamplePositions = new float[DRAG_SAMPLE_COUNT];
+        private int mSampleStart;
+        private int mSampleCount;
+        private boolean mPending;
+
+        void addEvent(MotionEvent event, int pointerIndex) {
+            final boolean vertical = getOrientation() == VERTICAL;
+            final int historySize = event.getHistorySize();
+            for (int h = 0; h < historySize; h++) {
+                addSample(event.getHistoricalEventTime(h), vertical
+                        ? event.getHistoricalY(pointerIndex, h) : event.getHistoricalX(pointerIndex, h));
+            }
+            addSample(event.getEventTime(), vertical ? event.getY(pointerIndex) : event.getX(pointerIndex));
+            if (!mPending) {
+                mPending = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        /**
+         * Applies any pending position immediately, without prediction, so the
+         * drop settles from where the finger actually left the screen.
+         */
+        void flush() {
+            if (mPending) {
+                Choreographer.getInstance().removeFrameCallback(this);
+                mPending = false;
+                if (mDragItem.mDragging) onDrag(currentOffset());
+            }
+            mSampleCount = 0;
+        }
+
+        void reset() {
+            if (mPending) Choreographer.getInstance().removeFrameCallback(this);
+            mPending = false;
+            mSampleCount = 0;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPending = false;
+            if (!mDragItem.mDragging) return;
+            final long startNanos = System.nanoTime();
+            int offset = currentOffset();
+            if (mDragPrediction) offset += predictedDistance();
+            onDrag(offset);
+            mAutoScroller.update();
+            mMetricsRecorder.onDragFrameProcessed(System.nanoTime() - startNanos);
+        }
+
+        private int currentOffset() {
+            return getOrientation() == VERTICAL ? mLastMotionY - mDownY : mLastMotionX - mDownX;
+        }
+
+        private void addSample(long time, float position) {
+            final int index = (mSampleStart + mSampleCount) % DRAG_SAMPLE_COUNT;
+            mSampleTimes[index] = time;
+            mSamplePositions[index] = position;
+            if (mSampleCount < DRAG_SAMPLE_COUNT) {
+                mSampleCount++;
+            } else {
+                mSampleStart = (mSampleStart + 1) % DRAG_SAMPLE_COUNT;
+            }
+        }
+
+        /**
+         * Extrapolates the pointer one frame ahead from the recent velocity,
+         * capped so a sudden stop cannot overshoot far.
+         */
+        private int predictedDistance() {
+            final int predicted = (int) (velocity() * DRAG_PREDICTION_MILLIS / 1000);
+            return Math.max(-2 * mSlop, Math.min(2 * mSlop, predicted));
+        }
+
+        /**
+         * Pointer velocity along the orientation in pixels per second, from the
+         * samples of the last few milliseconds.
+         */
+        float velocity() {
+            if (mSampleCount < 2) return 0;
+            final int last = (mSampleStart + mSampleCount - 1) % DRAG_SAMPLE_COUNT;
+            int first = last;
+            for (int i = mSampleCount - 2; i >= 0; i--) {
+                final int index = (mSampleStart + i) % DRAG_SAMPLE_COUNT;
+                if (mSampleTimes[last] - mSampleTimes[index] > DRAG_VELOCITY_WINDOW_MILLIS) break;
+                first = index;
+            }
+            final long elapsed = mSampleTimes[last] - mSampleTimes[first];
+            if (elapsed <= 0) return 0;
+            return (mSamplePositions[last] - mSamplePositions[first]) * 1000 / elapsed;
         }
     }
 
-    private class DraggableChild {
-        private ValueAnimator mValueAnimator;
-        void endExistingAnimation() {
-            if (null != mValueAnimator) mValueAnimator.end();
+    /**
+     * Collects {@link DragMetrics} for one drag when a {@link DragMetricsListener}
+     * is set. While the drag is in progress it also watches every Choreographer
+     * frame to count janky ones, and the window's draws to catch the first drag
+     * frame wherever the shadow is drawn.
+     */
+    private class MetricsRecorder implements Choreographer.FrameCallback, ViewTreeObserver.OnDrawListener {
+        private final DragMetrics mMetrics = new DragMetrics();
+        private boolean mRecording;
+        private boolean mDragStarted;
+        private boolean mWatchingFrames;
+        private boolean mFirstFrameDrawn;
+        private long mRequestNanos;
+        private long mLastFrameTimeNanos;
+        private long mMinFrameIntervalNanos;
+        private ViewTreeObserver mDrawObserver;
+
+        void onDetectStart() {
+            mRecording = null != mDragMetricsListener;
+            if (!mRecording) return;
+            mMetrics.reset();
+            mDragStarted = false;
+            mFirstFrameDrawn = false;
+            mRequestNanos = 0;
+            mLastFrameTimeNanos = 0;
+            mMinFrameIntervalNanos = Long.MAX_VALUE;
+        }
+
+        /**
+         * Starts the long-press-to-drag clock: called on the long-press itself
+         * for long-click drags, and when the touch slop is crossed for handle
+         * drags, so neither the long-press timeout nor the finger's first
+         * movement is counted.
+         */
+        void onDragRequested() {
+            if (mRecording && 0 == mRequestNanos) mRequestNanos = System.nanoTime();
+        }
+
+        void onDragStart() {
+            if (!mRecording) return;
+            mDragStarted = true;
+            mWatchingFrames = true;
+            Choreographer.getInstance().postFrameCallback(this);
+            mDrawObserver = getViewTreeObserver();
+            mDrawObserver.addOnDrawListener(this);
+        }
+
+        @Override
+        public void onDraw() {
+            if (!mRecording || !mDragItem.mDragging || mFirstFrameDrawn) return;
+            mFirstFrameDrawn = true;
+            if (0 != mRequestNanos) mMetrics.mLongPressToDragNanos = System.nanoTime() - mRequestNanos;
+        }
+
+        void onSnapshot(int bytes, long captureNanos) {
+            if (!mRecording) return;
+            mMetrics.mSnapshotBytes = bytes;
+            mMetrics.mSnapshotCaptureNanos = captureNanos;
+        }
+
+        void onSwaps(int count) {
+            if (mRecording) mMetrics.mSwapCount += count;
+        }
+
+        void onRelayout() {
+            if (mRecording) mMetrics.mRelayoutCount++;
+        }
+
+        void onDragFrameProcessed(long nanos) {
+            if (!mRecording) return;
+            mMetrics.mFrameCount++;
+            mMetrics.mTotalFrameNanos += nanos;
+            mMetrics.mMaxFrameNanos = Math.max(mMetrics.mMaxFrameNanos, nanos);
         }
-        void cancelExistingAnimation() {
-            if (null != mValueAnimator) mValueAnimator.cancel();
+
+        void onDetectStop() {
+            if (mWatchingFrames) Choreographer.getInstance().removeFrameCallback(this);
+            mWatchingFrames = false;
+            if (null != mDrawObserver && mDrawObserver.isAlive()) mDrawObserver.removeOnDrawListener(this);
+            mDrawObserver = null;
+            if (!mRecording) return;
+            mRecording = false;
+            if (mDragStarted && null != mDragMetricsListener) mDragMetricsListener.onDragMetrics(mMetrics);
+        }
+
+        /**
+         * Counts a frame as janky when it arrives more than 1.5 times the shortest
+         * frame interval seen during this drag after the previous one.
+         */
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRecording || !mDragItem.mDragging) {
+                mWatchingFrames = false;
+                return;
+            }
+            if (0 != mLastFrameTimeNanos) {
+                final long interval = frameTimeNanos - mLastFrameTimeNanos;
+                mMinFrameIntervalNanos = Math.min(mMinFrameIntervalNanos, interval);
+                if (interval > JANK_FRAME_FACTOR * mMinFrameIntervalNanos) mMetrics.mJankyFrameCount++;
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
         }
     }
 
@@ -181,6 +965,10 @@ public class DragLinearLayout extends LinearLayout {
                 mClickToDragListener.onLongClickToDrag(v);
             }
             startDetectingDrag(v);
+            mMetricsRecorder.onDragRequested();
+            // the gesture belongs to the drag from here on; until now the parent could scroll
+            final ViewParent parent = getParent();
+            if (mDragItem.mDetecting && null != parent) parent.requestDisallowInterceptTouchEvent(true);
             return true;
         }
     }
@@ -197,9 +985,20 @@ public class DragLinearLayout extends LinearLayout {
         }
 
         if (this == child.getParent()) {
-            dragHandle.setOnTouchListener(new DragHandleOnTouchListener(child));
-            dragHandle.setOnLongClickListener(mLongClickDragListener);
-            mDraggableChildren.put(indexOfChild(child), new DraggableChild());
+            final DraggableChild draggableChild = new DraggableChild(child, dragHandle);
+            final DraggableChild previous = mDraggableChildren.put(child, draggableChild);
+            if (mDragItem.mDetecting && null == previous) {
+                final int index = indexOfEngineChild(child);
+                if (index >= 0) {
+                    mEngine.setDraggable(index, true);
+                    mEngine.buildDraggableTables();
+                }
+            }
+            if (null != previous) draggableChild.mSelected = previous.mSelected;
+            if (null != previous && previous.mDragHandle != dragHandle) {
+                previous.mDragHandle.setOnTouchListener(null);
+                previous.mDragHandle.setOnLongClickListener(null);
+            }
         } else {
             Log.e(TAG, child + " is not a child, cannot make draggable.");
         }
@@ -213,256 +1012,534 @@ public class DragLinearLayout extends LinearLayout {
             getChildAt(i).setOnTouchListener(null);
         }
         super.removeAllViews();
-        mDraggableChildren.clear();
     }
 
-    private long getTranslateAnimationDuration(float distance) {
-        return Math.min(MAX_SWITCH_DURATION, Math.max(MIN_SWITCH_DURATION,
-                (long) (NOMINAL_SWITCH_DURATION * Math.abs(distance) / mNominalDistanceScaled)));
+    /**
+     * Draggable children are tracked by identity, so adding or removing other
+     * children keeps them draggable; a removed child stops being draggable. A
+     * change to the children while a drag or its drop is in progress is folded
+     * into the drag: the moves it made so far are reported in terms of the
+     * children before the change, the change is recorded in the drag-time
+     * order, and the gesture carries on over the new children. Removing a
+     * dragged child finishes the drag instead, once the removal is complete.
+     */
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        if (mDragItem.mDetecting) onChildAddedDuringDrag(child);
+        if (mReceiving) abortReceiving();
+        if (animatesChanges()) {
+            capturePendingMoves(child);
+            startChange(child).fadeIn();
+        }
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        if (mDragItem.mDetecting) onChildRemovedDuringDrag(child);
+        if (mReceiving) abortReceiving();
+        final DraggableChild draggableChild = mDraggableChildren.remove(child);
+        if (null != draggableChild) draggableChild.release();
+        mKeyedItems.remove(child);
+        if (animatesChanges()) {
+            capturePendingMoves(null);
+            fadeOutRemovedChild(child);
+        } else {
+            endChange(child);
+        }
+        mSnapshotPrefetcher.invalidate(child);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        if (null != mDragCoordinator) mDragCoordinator.mLayouts.add(this);
+        mSnapshotPrefetcher.schedule();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        removeCallbacks(mAdapterExtentsUpdate);
+        mAutoScroller.stop();
+        mDragFrameCoalescer.reset();
+        if (mDragItem.mDetecting) mDragItem.stopDetecting();
+        if (mReceiving) abortReceiving();
+        // the coordinator may outlive this layout's screen; it only holds attached layouts
+        if (null != mDragCoordinator) mDragCoordinator.mLayouts.remove(this);
+        mDisplacementAnimator.clear();
+        mSnapshotPrefetcher.clear();
+        mSnapshotPool.clear();
+    }
+
+    @Override
+    public void onDescendantInvalidated(@NonNull View child, @NonNull View target) {
+        super.onDescendantInvalidated(child, target);
+        // damage from inside the child always changes its content; damage to the
+        // child itself may only be the translation or alpha this layout animates
+        if (target != child || !animatesChild(child)) mSnapshotPrefetcher.invalidate(child);
+    }
+
+    /**
+     * Whether this layout is moving or fading the child. Its translation and
+     * alpha change every frame then, which damages the child itself without
+     * changing what its snapshot shows.
+     */
+    private boolean animatesChild(View child) {
+        final DraggableChild draggableChild = mDraggableChildren.get(child);
+        if (null != draggableChild && draggableChild.isAnimating()) return true;
+        return mRunningChanges.containsKey(child) || mDragItem.mDetecting && mDragItem.contains(child);
     }
 
     public void startDetectingDrag(View child) {
-        if (mDragItem.mDetecting)
+        if (mDragItem.mDetecting || mReceiving)
             return;
 
+        final DraggableChild draggableChild = mDraggableChildren.get(child);
         final int position = indexOfChild(child);
-        if (position>=0) {
-            mDraggableChildren.get(position).endExistingAnimation();
+        if (null != draggableChild && position>=0) {
+            draggableChild.endAnimation();
+            mMetricsRecorder.onDetectStart();
+            beginSlotOrder();
+            for (int i = 0; i < mEngine.mCount; i++) mEngineChildren[i] = getChildAt(i);
             mDragItem.startDetectingOnPossibleDrag(child, position);
         }
     }
 
     private void startDrag() {
+        if (!mIsEnterLongClick) mMetricsRecorder.onDragRequested();
         mLayoutTransition = getLayoutTransition();
         if (mLayoutTransition != null) {
             setLayoutTransition(null);
         }
+        gatherSelectedGroup();
         mDragItem.onDragStart();
         requestDisallowInterceptTouchEvent(true);
+        mLastMotionY = mDownY;
+        mLastMotionX = mDownX;
+        mAutoScroller.start();
+        mMetricsRecorder.onDragStart();
+        if (null != mDragTraceListener && 1 == mDragItem.mGroupSize) {
+            final boolean vertical = getOrientation() == VERTICAL;
+            final int size = vertical ? mDragItem.mHeight : mDragItem.mWidth;
+            mDragTrace = new DragTrace(mEngine.mExtents, mEngine.mDraggable, mEngine.mCount, mEngine.mSlotEdges[0],
+                    mDragItem.mPosition, vertical ? mDragItem.mStartTop : mDragItem.mStartLeft, size,
+                    Math.min(mSwapHysteresis, size / 4));
+        }
     }
 
-    private void onDragStop() {
-        if (getOrientation() == VERTICAL) {
-            mDragItem.mSettleAnimation = ValueAnimator.ofFloat(mDragItem.mTotalDragOffset,
-                    mDragItem.mTotalDragOffset - mDragItem.mTargetTopOffset)
-                    .setDuration(getTranslateAnimationDuration(mDragItem.mTargetTopOffset));
-        } else {
-            mDragItem.mSettleAnimation = ValueAnimator.ofFloat(mDragItem.mTotalDragOffset,
-                    mDragItem.mTotalDragOffset - mDragItem.mTargetLeftOffset)
-                    .setDuration(getTranslateAnimationDuration(mDragItem.mTargetLeftOffset));
-        }
+    private void onDragStop(float velocity) {
+        if (!mSettleAnimator.isRunning()) mDragItem.onDragStop();
+        mSettleAnimator.start(mDragItem.mTotalDragOffset, mDragItem.mCrossOffset, velocity,
+                mDragItem.mTotalDragOffset - mDragItem.targetOffset(), 0);
+    }
 
-        mDragItem.mSettleAnimation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                if (!mDragItem.mDetecting) return;
-                mDragItem.setTotalOffset(((Float) animation.getAnimatedValue()).intValue());
-                invalidate();
+    private void onDrag(final int offset) {
+        if (mDragGroupRemoved) return;
+        Trace.beginSection("DragLinearLayout#onDrag");
+        try {
+            if (null != mDragCoordinator) {
+                mDragItem.mCrossOffset = getOrientation() == VERTICAL ? mLastMotionX - mDownX : mLastMotionY - mDownY;
             }
-        });
-
-        mDragItem.mSettleAnimation.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mDragItem.onDragStop();
+            mDragItem.setTotalOffset(offset);
+            if (null != mDragCoordinator && mDragCoordinator.onDragMoved(this)) return;
+            // the offset the engine sees, after coalescing, prediction and auto-scroll
+            if (null != mDragTrace) mDragTrace.addEvent(DragTrace.EVENT_MOVE, SystemClock.uptimeMillis(), offset);
+            final int target = findTargetSlot();
+            if (target != mDragItem.mPosition) {
+                if (mDragItem.mGroupSize > 1) {
+                    moveGroupToSlot(target);
+                } else {
+                    moveDraggedToSlot(target);
+                }
             }
+        } finally {
+            Trace.endSection();
+        }
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (!mDragItem.mDetecting) {
-                    return;
-                }
+    private int findTargetSlot() {
+        final boolean vertical = getOrientation() == VERTICAL;
+        final int size = vertical ? mDragItem.mHeight : mDragItem.mWidth;
+        final int hysteresis = Math.min(mSwapHysteresis, size / 4);
+        final int lead = (vertical ? mDragItem.mStartTop : mDragItem.mStartLeft) + mDragItem.mTotalDragOffset;
+        return mEngine.findTargetSlot(mDragItem.mPosition, mDragItem.mGroupSize, lead, size, hysteresis);
+    }
 
-                mDragItem.mSettleAnimation = null;
-                mDragItem.stopDetecting();
+    /**
+     * Moves the dragged item to the target slot, shifting every draggable child
+     * in between by one draggable slot, and animates all displaced children in
+     * one batch.
+     */
+    private void moveDraggedToSlot(int target) {
+        final int from = mDragItem.mPosition;
+        onEngineMoved(mEngine.moveTo(from, target), Math.min(from, target), Math.max(from, target), target);
+    }
 
-                if (mLayoutTransition != null && getLayoutTransition() == null) {
-                    setLayoutTransition(mLayoutTransition);
-                }
-            }
-        });
-        mDragItem.mSettleAnimation.start();
+    /**
+     * Moves the dragged group so that it starts at the given slot.
+     */
+    private void moveGroupToSlot(int target) {
+        final int from = mDragItem.mPosition;
+        final int size = mDragItem.mGroupSize;
+        onEngineMoved(mEngine.moveGroupTo(from, size, target), Math.min(from, target),
+                Math.max(from, target) + size - 1, target);
     }
 
-    private void onDrag(final int offset) {
-        if (getOrientation() == VERTICAL) {
-            mDragItem.setTotalOffset(offset);
-            invalidate();
-            int currentTop = mDragItem.mStartTop + mDragItem.mTotalDragOffset;
-            int belowPosition = nextDraggablePosition(mDragItem.mPosition);
-            int abovePosition = previousDraggablePosition(mDragItem.mPosition);
-            View belowView = getChildAt(belowPosition);
-            View aboveView = getChildAt(abovePosition);
-            final boolean isBelow = (belowView != null) &&
-                    (currentTop + mDragItem.mHeight > belowView.getTop() + belowView.getHeight() / 2);
-            final boolean isAbove = (aboveView != null) &&
-                    (currentTop < aboveView.getTop() + aboveView.getHeight() / 2);
-            if (isBelow || isAbove) {
-                final View switchView = isBelow ? belowView : aboveView;
-                final int originalPosition = mDragItem.mPosition;
-                final int switchPosition = isBelow ? belowPosition : abovePosition;
-                mDraggableChildren.get(switchPosition).cancelExistingAnimation();
-                final float switchViewStartY = switchView.getY();
-
-                if (isBelow) {
-                    removeViewAt(originalPosition);
-                    removeViewAt(switchPosition - 1);
-                    addView(belowView, originalPosition);
-                    addView(mDragItem.mView, switchPosition);
-                } else {
-                    removeViewAt(switchPosition);
-                    removeViewAt(originalPosition - 1);
-                    addView(mDragItem.mView, switchPosition);
-                    addView(aboveView, originalPosition);
-                }
-                mDragItem.mPosition = switchPosition;
-                final ViewTreeObserver switchViewObserver = switchView.getViewTreeObserver();
-                switchViewObserver.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                    @Override
-                    public boolean onPreDraw() {
-                        switchViewObserver.removeOnPreDrawListener(this);
-                        final ObjectAnimator switchAnimator = ObjectAnimator.ofFloat(switchView, "y",
-                                switchViewStartY, switchView.getTop())
-                                .setDuration(getTranslateAnimationDuration(switchView.getTop() - switchViewStartY));
-                        switchAnimator.addListener(new AnimatorListenerAdapter() {
-                            @Override
-                            public void onAnimationStart(Animator animation) {
-                                mDraggableChildren.get(originalPosition).mValueAnimator = switchAnimator;
-                            }
-
-                            @Override
-                            public void onAnimationEnd(Animator animation) {
-                                mDraggableChildren.get(originalPosition).mValueAnimator = null;
-                            }
-                        });
-                        switchAnimator.start();
+    /**
+     * Offsets the children of the slots the engine just reordered and springs
+     * the displaced ones from where they were.
+     */
+    private void onEngineMoved(int displaced, int first, int last, int target) {
+        final boolean vertical = getOrientation() == VERTICAL;
+        for (int i = 0; i < displaced; i++) {
+            final View switchView = getChildAt(mEngine.mDisplaced[i]);
+            mDisplacedViews[i] = switchView;
+            mDisplacedStarts[i] = vertical ? switchView.getY() : switchView.getX();
+        }
+        applySlotLayout(first, last);
+        mDragItem.mPosition = target;
+        mMetricsRecorder.onSwaps(displaced);
 
-                        return true;
-                    }
-                });
-
-                final ViewTreeObserver observer = mDragItem.mView.getViewTreeObserver();
-                observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                    @Override
-                    public boolean onPreDraw() {
-                        observer.removeOnPreDrawListener(this);
-                        mDragItem.updateTargetLocation();
-                        if (mDragItem.settling()) {
-                            Log.d(TAG, "Updating settle animation");
-                            mDragItem.mSettleAnimation.removeAllListeners();
-                            mDragItem.mSettleAnimation.cancel();
-                            onDragStop();
-                        }
-                        return true;
-                    }
-                });
+        for (int i = 0; i < displaced; i++) {
+            animateDisplacedChild(mDisplacedViews[i], mDisplacedStarts[i]);
+            mDisplacedViews[i] = null;
+        }
+
+        mDragItem.updateTargetLocation();
+        if (mDragItem.settling()) {
+            Log.d(TAG, "Updating settle animation");
+            onDragStop(0);
+        }
+        if (!mDeferredReorder) commitSlotOrder();
+    }
+
+    /**
+     * Gathers the selected children next to the dragged one when a selected child
+     * starts a drag, so the whole selection moves as one block. Unselected
+     * children squeezed out of the block are animated to their new slots. A
+     * selection split by a non-draggable child is not gathered, and only the
+     * touched child is dragged.
+     */
+    private void gatherSelectedGroup() {
+        final DraggableChild anchor = mDraggableChildren.get(mDragItem.mView);
+        if (null == anchor || !anchor.mSelected) return;
+        final int count = mEngine.mCount;
+        int selected = 0;
+        int before = 0;
+        for (int slot = 0; slot < count; slot++) {
+            final DraggableChild draggableChild = mDraggableChildren.get(getChildAtSlot(slot));
+            if (null != draggableChild && draggableChild.mSelected) {
+                if (slot < mDragItem.mPosition) before++;
+                selected++;
             }
+        }
+        if (selected < 2) return;
+
+        // no move has happened yet, so the slot order is still the child order
+        final boolean vertical = getOrientation() == VERTICAL;
+        final int start = mDragItem.mPosition - before;
+        for (int index = 0; index < count; index++) {
+            final DraggableChild draggableChild = mDraggableChildren.get(getChildAt(index));
+            mSelectedChildren[index] = null != draggableChild && draggableChild.mSelected;
+            if (mSelectedChildren[index]) draggableChild.endAnimation();
+        }
+        final int displaced = mEngine.gather(mSelectedChildren, start, selected);
+        // a non-draggable child between selected ones keeps the drag to one child
+        if (displaced < 0) return;
+        for (int i = 0; i < displaced; i++) {
+            final View child = getChildAt(mEngine.mDisplaced[i]);
+            mDisplacedViews[i] = child;
+            mDisplacedStarts[i] = vertical ? child.getY() : child.getX();
+        }
+        applySlotLayout(0, count - 1);
+        for (int i = 0; i < selected; i++) mOrderedViews[i] = getChildAtSlot(start + i);
+        mDragItem.setGroup(mOrderedViews, selected, start);
+        for (int i = 0; i < selected; i++) mOrderedViews[i] = null;
+        mMetricsRecorder.onSwaps(displaced);
+
+        for (int i = 0; i < displaced; i++) {
+            animateDisplacedChild(mDisplacedViews[i], mDisplacedStarts[i]);
+            mDisplacedViews[i] = null;
+        }
+    }
+
+    private void animateDisplacedChild(View view, float start) {
+        final DraggableChild draggableChild = mDraggableChildren.get(view);
+        if (null == draggableChild) return;
+        if (getOrientation() == VERTICAL) {
+            draggableChild.animateFrom(0, start - view.getTop());
         } else {
-            mDragItem.setTotalOffset(offset);
-            invalidate();
-            int currentLeft = mDragItem.mStartLeft + mDragItem.mTotalDragOffset;
-            int nextPosition = nextDraggablePosition(mDragItem.mPosition);
-            int prePosition = previousDraggablePosition(mDragItem.mPosition);
-            View nextView = getChildAt(nextPosition);
-            View preView = getChildAt(prePosition);
-            final boolean isToNext = (nextView != null) &&
-                    (currentLeft + mDragItem.mWidth > nextView.getLeft() + nextView.getWidth() / 2);
-            final boolean isToPre = (preView != null) &&
-                    (currentLeft < preView.getLeft() + preView.getWidth() / 2);
-            if (isToNext || isToPre) {
-                final View switchView = isToNext ? nextView : preView;
-                final int originalPosition = mDragItem.mPosition;
-                final int switchPosition = isToNext ? nextPosition : prePosition;
-                mDraggableChildren.get(switchPosition).cancelExistingAnimation();
-                final float switchViewStartX = switchView.getX();
-                if (isToNext) {
-                    removeViewAt(originalPosition);
-                    removeViewAt(switchPosition - 1);
-                    addView(nextView, originalPosition);
-                    addView(mDragItem.mView, switchPosition);
-                } else {
-                    removeViewAt(switchPosition);
-                    removeViewAt(originalPosition - 1);
-                    addView(mDragItem.mView, switchPosition);
-                    addView(preView, originalPosition);
-                }
-                mDragItem.mPosition = switchPosition;
-                final ViewTreeObserver switchViewObserver = switchView.getViewTreeObserver();
-                switchViewObserver.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                    @Override
-                    public boolean onPreDraw() {
-                        switchViewObserver.removeOnPreDrawListener(this);
-                        final ObjectAnimator switchAnimator = ObjectAnimator.ofFloat(switchView, "x",
-                                switchViewStartX, switchView.getLeft())
-                                .setDuration(getTranslateAnimationDuration(switchView.getLeft() - switchViewStartX));
-                        switchAnimator.addListener(new AnimatorListenerAdapter() {
-                            @Override
-                            public void onAnimationStart(Animator animation) {
-                                mDraggableChildren.get(originalPosition).mValueAnimator = switchAnimator;
-                            }
-                            @Override
-                            public void onAnimationEnd(Animator animation) {
-                                mDraggableChildren.get(originalPosition).mValueAnimator = null;
-                            }
-                        });
-                        switchAnimator.start();
-                        return true;
-                    }
-                });
-
-                final ViewTreeObserver observer = mDragItem.mView.getViewTreeObserver();
-                observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                    @Override
-                    public boolean onPreDraw() {
-                        observer.removeOnPreDrawListener(this);
-                        mDragItem.updateTargetLocation();
-                        if (mDragItem.settling()) {
-                            mDragItem.mSettleAnimation.removeAllListeners();
-                            mDragItem.mSettleAnimation.cancel();
-                            onDragStop();
-                        }
-                        return true;
-                    }
-                });
-            }
+            draggableChild.animateFrom(start - view.getLeft(), 0);
         }
     }
 
-    private int previousDraggablePosition(int position) {
-        int startIndex = mDraggableChildren.indexOfKey(position);
-        if (startIndex < 1 || startIndex > mDraggableChildren.size()) return -1;
-        return mDraggableChildren.keyAt(startIndex - 1);
+    private void beginSlotOrder() {
+        final int count = getChildCount();
+        ensureSlotCapacity(count);
+        mEngine.begin(count);
+        for (int i = 0; i < count; i++) mEngine.setDraggable(i, mDraggableChildren.containsKey(getChildAt(i)));
+        mEngine.buildDraggableTables();
+        measureSlots();
     }
 
-    private int nextDraggablePosition(int position) {
-        int startIndex = mDraggableChildren.indexOfKey(position);
-        if (startIndex < -1 || startIndex > mDraggableChildren.size() - 2) return -1;
-        return mDraggableChildren.keyAt(startIndex + 1);
+    private void ensureSlotCapacity(int count) {
+        if (mOrderedViews.length >= count) return;
+        mOrderedViews = new View[count];
+        mDisplacedViews = new View[count];
+        mDisplacedStarts = new float[count];
+        mEngineChildren = Arrays.copyOf(mEngineChildren, count);
+        mSelectedChildren = new boolean[count];
     }
 
-    @Override
-    protected void dispatchDraw(@NonNull Canvas canvas) {
-        super.dispatchDraw(canvas);
-        if (mDragItem.mDetecting && (mDragItem.mDragging || mDragItem.settling())) {
-            canvas.save();
-            if (getOrientation() == VERTICAL) {
-                canvas.translate(0, mDragItem.mTotalDragOffset);
+    private View getChildAtSlot(int slot) {
+        if (slot < 0 || slot >= mEngine.mCount) return null;
+        return getChildAt(mEngine.mSlotOrder[slot]);
+    }
+
+    /**
+     * Caches every child's extent along the orientation, margins included, and
+     * the prefix sums of those extents in slot order.
+     */
+    private void measureSlots() {
+        final boolean vertical = getOrientation() == VERTICAL;
+        int start = Integer.MAX_VALUE;
+        for (int i = 0; i < mEngine.mCount; i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                mEngine.setExtent(i, 0);
+                continue;
+            }
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (vertical) {
+                mEngine.setExtent(i, lp.topMargin + child.getHeight() + lp.bottomMargin);
+                start = Math.min(start, child.getTop() - lp.topMargin);
             } else {
-                canvas.translate(mDragItem.mTotalDragOffset, 0);
+                mEngine.setExtent(i, lp.leftMargin + child.getWidth() + lp.rightMargin);
+                start = Math.min(start, child.getLeft() - lp.leftMargin);
             }
-            mDragItem.mBitmapDrawable.draw(canvas);
-            canvas.restore();
         }
+        if (Integer.MAX_VALUE == start) start = vertical ? getPaddingTop() : getPaddingLeft();
+        mEngine.setStartEdge(start);
+        mEngine.updateEdges(0, mEngine.mCount - 1);
     }
 
-    @Override
-    public boolean onInterceptTouchEvent(MotionEvent event) {
-        if (!mIsLongClickDraggable) {
-            return super.onInterceptTouchEvent(event);
-        }
+    /**
+     * Moves the children of the given slots onto their cached edges by offsetting
+     * them, without a layout pass.
+     */
+    private void applySlotLayout(int first, int last) {
+        final boolean vertical = getOrientation() == VERTICAL;
+        final int[] edges = mEngine.mSlotEdges;
+        for (int slot = first; slot <= last; slot++) {
+            final View child = getChildAtSlot(slot);
+            if (child.getVisibility() == GONE) continue;
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final int gap = mReceiving && slot >= mReceiveSlot ? mReceiveExtent : 0;
+            if (vertical) {
+                final int top = edges[slot] + gap + lp.topMargin;
+                if (top != child.getTop()) child.offsetTopAndBottom(top - child.getTop());
+            } else {
+                final int left = edges[slot] + gap + lp.leftMargin;
+                if (left != child.getLeft()) child.offsetLeftAndRight(left - child.getLeft());
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Reorders the real children to match the drag-time order with a single
+     * detach/attach per moved child followed by one layout request.
+     */
+    private void commitSlotOrder() {
+        if (!mEngine.mDirty) return;
+        final int count = mEngine.mCount;
+        for (int i = 0; i < count; i++) mOrderedViews[i] = getChildAt(mEngine.mSlotOrder[i]);
+        for (int i = 0; i < count; i++) {
+            final View child = mOrderedViews[i];
+            if (getChildAt(i) != child) {
+                final ViewGroup.LayoutParams lp = child.getLayoutParams();
+                detachViewFromParent(child);
+                attachViewToParent(child, i, lp);
+            }
+            mEngineChildren[i] = child;
+            mOrderedViews[i] = null;
+        }
+        mEngine.commit();
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if (mDragItem.mDetecting) mMetricsRecorder.onRelayout();
+        if (mEngine.mCount > 0 && mEngine.mCount == getChildCount()) {
+            measureSlots();
+            if (mEngine.mDirty || mReceiving) applySlotLayout(0, mEngine.mCount - 1);
+            if (mDragItem.mDetecting && !mDragGroupRemoved) {
+                mDragItem.updateTargetLocation();
+                if (mDragItem.settling()) onDragStop(0);
+            }
+        }
+        if (mPendingMoveCount > 0) animatePendingMoves();
+        if (null != mAdapter && !mDragItem.mDetecting && measureAdapterItems()) {
+            removeCallbacks(mAdapterExtentsUpdate);
+            post(mAdapterExtentsUpdate);
+        }
+    }
+
+    /**
+     * Gives a child added during a drag a slot next to one of the children it
+     * was added between, outside of a dragged group: right after the child
+     * behind it, unless only the child in front of it is non-draggable and so
+     * still in its own slot, in which case right before that one. Only the
+     * engine and its children are updated: the framework may still be changing
+     * the children, so nothing is reordered until the next layout.
+     */
+    private void onChildAddedDuringDrag(View child) {
+        final int index = indexOfChild(child);
+        if (index < 0 || index > mEngine.mCount) return;
+        reportDragMoves();
+        final int groupStart = mDragItem.mPosition;
+        final int groupEnd = groupStart + mDragItem.mGroupSize;
+        int slot;
+        if (index > 0 && (!mEngine.mDraggable[index - 1] || index == mEngine.mCount || mEngine.mDraggable[index])) {
+            slot = mEngine.slotOf(index - 1) + 1;
+        } else {
+            slot = index < mEngine.mCount ? mEngine.slotOf(index) : 0;
+        }
+        if (slot > groupStart && slot < groupEnd) slot = groupEnd;
+        final int count = mEngine.mCount;
+        if (mEngineChildren.length < count + 1) ensureSlotCapacity(2 * count + 1);
+        System.arraycopy(mEngineChildren, index, mEngineChildren, index + 1, count - index);
+        mEngineChildren[index] = child;
+        mEngine.insert(index, slot, mDraggableChildren.containsKey(child));
+        continueDragAfterChange();
+    }
+
+    /**
+     * Drops a removed child's slot. Called while the framework is removing it,
+     * possibly with others whose removal has not been reported yet, so the
+     * children are neither read nor reordered here.
+     */
+    private void onChildRemovedDuringDrag(View child) {
+        final int index = indexOfEngineChild(child);
+        if (index < 0) return;
+        reportDragMoves();
+        final int count = mEngine.mCount;
+        System.arraycopy(mEngineChildren, index + 1, mEngineChildren, index, count - index - 1);
+        mEngineChildren[count - 1] = null;
+        mEngine.remove(index);
+        if (mDragItem.contains(child)) {
+            // the drag cannot go on without it; it is finished once the removal is done
+            mDragGroupRemoved = true;
+            post(mFinishDragAfterChange);
+        } else {
+            continueDragAfterChange();
+        }
+    }
+
+    private int indexOfEngineChild(View child) {
+        for (int i = 0; i < mEngine.mCount; i++) {
+            if (mEngineChildren[i] == child) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reports the moves the drag has made so far, as a drop would, in terms of
+     * the children the engine still describes.
+     */
+    private void reportDragMoves() {
+        final int startPosition = mDragItem.mStartPosition;
+        if (startPosition < 0 || (null == mReorderListener && null == mAdapter)) return;
+        final int[] moves = mEngine.pendingMoves();
+        if (0 == moves.length) return;
+        final int endPosition = mEngine.slotOf(indexOfEngineChild(mDragItem.mView));
+        if (null != mAdapter) onAdapterDragFinished(moves);
+        if (null != mReorderListener) mReorderListener.onReorder(startPosition, endPosition, moves);
+    }
+
+    /**
+     * Carries the drag or its settle on over the changed children. The moves
+     * up to the change were reported already and the engine counts moves from
+     * the slot order at the change, so positions are now slots in that order;
+     * the drop only reports the moves made after the change. The dragged item
+     * is retargeted on the next layout, once the framework is done changing
+     * the children.
+     */
+    private void continueDragAfterChange() {
+        if (mDragGroupRemoved) return;
+        mDragItem.mPosition = mEngine.slotOf(indexOfEngineChild(mDragItem.mGroupViews[0]));
+        mDragItem.mStartPosition = mEngine.slotOf(indexOfEngineChild(mDragItem.mView));
+        mDragTrace = null;
+        requestLayout();
+    }
+
+    /**
+     * Ends a drag that lost a dragged child, after the removal has completed, by
+     * committing the drag-time order of the remaining children. Its moves were
+     * reported before the change, so the drop reports nothing more.
+     */
+    private void finishDragAfterChange() {
+        if (!mDragGroupRemoved) return;
+        mDragItem.mStartPosition = -1;
+        mDragItem.stopDetecting();
+        restoreLayoutTransition();
+        requestLayout();
+    }
+
+    /**
+     * Ends a drag without committing its drag-time order.
+     */
+    private void abortDrag() {
+        mEngine.discard();
+        mDragItem.mStartPosition = -1;
+        mDragItem.stopDetecting();
+        restoreLayoutTransition();
+        requestLayout();
+    }
+
+    private void restoreLayoutTransition() {
+        if (mLayoutTransition != null && getLayoutTransition() == null) {
+            setLayoutTransition(mLayoutTransition);
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(@NonNull Canvas canvas) {
+        Trace.beginSection("DragLinearLayout#dispatchDraw");
+        try {
+            mDrawingDragIndex = mDragItem.mLive ? indexOfChild(mDragItem.mView) : -1;
+            super.dispatchDraw(canvas);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Draws the live-dragged child last so it stays on top of its siblings on
+     * releases where translationZ does not reorder drawing.
+     */
+    @Override
+    protected int getChildDrawingOrder(int childCount, int drawingPosition) {
+        final int dragIndex = mDrawingDragIndex;
+        if (dragIndex < 0 || dragIndex >= childCount) return drawingPosition;
+        if (drawingPosition == childCount - 1) return dragIndex;
+        return drawingPosition >= dragIndex ? drawingPosition + 1 : drawingPosition;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if (!mIsLongClickDraggable) {
+            return super.onInterceptTouchEvent(event);
+        }
         switch (MotionEventCompat.getActionMasked(event)) {
             case MotionEvent.ACTION_DOWN: {
-                getParent().requestDisallowInterceptTouchEvent(true);
                 if (mDragItem.mDetecting) return false;
                 mDownY = (int) MotionEventCompat.getY(event, 0);
                 mDownX = (int) MotionEventCompat.getX(event, 0);
@@ -530,15 +1607,9 @@ public class DragLinearLayout extends LinearLayout {
                 if (!mDragItem.mDragging) break;
                 if (INVALID_POINTER_ID == mActivePointerId) break;
                 int pointerIndex = event.findPointerIndex(mActivePointerId);
-                int lastEventY = (int) MotionEventCompat.getY(event, pointerIndex);
-                int lastEventX = (int) MotionEventCompat.getX(event, pointerIndex);
-                if (getOrientation() == VERTICAL) {
-                    int deltaY = lastEventY - mDownY;
-                    onDrag(deltaY);
-                } else {
-                    int deltaX = lastEventX - mDownX;
-                    onDrag(deltaX);
-                }
+                mLastMotionY = (int) MotionEventCompat.getY(event, pointerIndex);
+                mLastMotionX = (int) MotionEventCompat.getX(event, pointerIndex);
+                mDragFrameCoalescer.addEvent(event, pointerIndex);
                 return true;
             }
             case MotionEvent.ACTION_POINTER_UP: {
@@ -549,10 +1620,15 @@ public class DragLinearLayout extends LinearLayout {
             }
             case MotionEvent.ACTION_CANCEL:
             case MotionEvent.ACTION_UP: {
+                final float releaseVelocity = mDragFrameCoalescer.velocity();
+                mDragFrameCoalescer.flush();
+                if (null != mDragTrace) mDragTrace.addEvent(DragTrace.EVENT_UP, SystemClock.uptimeMillis(), 0);
                 onTouchEnd();
 
-                if (mDragItem.mDragging) {
-                    onDragStop();
+                if (mDragItem.mDragging && null != mDragCoordinator && mDragCoordinator.drop(this)) {
+                    return true;
+                } else if (mDragItem.mDragging) {
+                    onDragStop(releaseVelocity);
                 } else if (mDragItem.mDetecting) {
                     mDragItem.stopDetecting();
                 }
@@ -563,26 +1639,59 @@ public class DragLinearLayout extends LinearLayout {
     }
 
     private void onTouchEnd() {
+        mAutoScroller.stop();
+        mDragFrameCoalescer.reset();
         mDownY = -1;
         mDownX = -1;
+        mLastMotionY = -1;
+        mLastMotionX = -1;
         mIsEnterLongClick = false;
         mActivePointerId = INVALID_POINTER_ID;
     }
 
-    private BitmapDrawable getDragDrawable(View view) {
-        int top = view.getTop();
-        int left = view.getLeft();
-        Bitmap bitmap = getBitmapFromView(view);
-        BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
-        drawable.setBounds(new Rect(left, top, left + view.getWidth(), top + view.getHeight()));
-        return drawable;
+    private BitmapDrawable getDragDrawable(View[] views, int count) {
+        Trace.beginSection("DragLinearLayout#getDragDrawable");
+        try {
+            final long startNanos = System.nanoTime();
+            final Rect bounds = new Rect(views[0].getLeft(), views[0].getTop(),
+                    views[0].getRight(), views[0].getBottom());
+            for (int i = 1; i < count; i++) {
+                bounds.union(views[i].getLeft(), views[i].getTop(), views[i].getRight(), views[i].getBottom());
+            }
+            Bitmap bitmap = 1 == count ? mSnapshotPrefetcher.take(views[0]) : null;
+            if (null == bitmap) bitmap = mSnapshotPool.render(views, count, bounds);
+            BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
+            drawable.setFilterBitmap(true);
+            drawable.setBounds(bounds);
+            mMetricsRecorder.onSnapshot(bitmap.getAllocationByteCount(), System.nanoTime() - startNanos);
+            return drawable;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Caps the size of a single drag snapshot in bytes; the pool of reusable
+     * snapshots is allowed to hold twice this amount.
+     */
+    public void setDragSnapshotBudget(int maxBytes) {
+        mSnapshotPool.setBudget(maxBytes);
     }
 
-    private static Bitmap getBitmapFromView(View view) {
-        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        view.draw(canvas);
-        return bitmap;
+    /**
+     * Sets how many bytes of snapshots may be rendered ahead of time, while the
+     * main thread is idle, for the draggable children on screen; 0, the default,
+     * turns prefetching off. A child's snapshot is dropped whenever it redraws,
+     * and a child that redraws repeatedly is no longer prefetched. Needs API
+     * 26, where the layout is told about redrawing children; the call is
+     * ignored below that.
+     */
+    public void setSnapshotPrefetchBudget(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Snapshot prefetch budget must not be negative.");
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        mSnapshotPrefetcher.setMaxBytes(maxBytes);
     }
 
     public void setClickToDragListener(ILongClickToDragListener clickToDragListener) {
@@ -595,6 +1704,977 @@ public class DragLinearLayout extends LinearLayout {
         }
     }
 
+    /**
+     * When enabled, drags move the child itself through its translation instead
+     * of drawing a bitmap snapshot, so no snapshot is captured and the child keeps
+     * updating its content while it is dragged. Takes effect from the next drag.
+     */
+    public void setLiveViewDrag(boolean liveViewDrag) {
+        mLiveViewDrag = liveViewDrag;
+    }
+
+    /**
+     * When enabled, the dragged item is drawn where the finger is expected to be
+     * one frame from now, extrapolated from the recent touch velocity.
+     */
+    public void setDragPrediction(boolean dragPrediction) {
+        mDragPrediction = dragPrediction;
+    }
+
+    /**
+     * When enabled, swaps during a drag only update a drag-time order and offset
+     * the affected children; the children themselves are reordered once, after
+     * the drop has settled. Child indices therefore stay unchanged until then.
+     */
+    public void setDeferredReorder(boolean deferredReorder) {
+        mDeferredReorder = deferredReorder;
+    }
+
+    /**
+     * When enabled, the layout animates changes to its children itself: added
+     * children fade in, removed children fade out and the children that stay
+     * slide to their new positions. The animations share the frame callback of
+     * the drag displacements, so unlike a {@link LayoutTransition}, which this
+     * replaces, they are not switched off around drags. Adapter-backed layouts
+     * are not animated.
+     */
+    public void setChangeAnimations(boolean changeAnimations) {
+        mChangeAnimations = changeAnimations;
+        if (changeAnimations) {
+            mLayoutTransition = null;
+            setLayoutTransition(null);
+        } else {
+            mDisplacementAnimator.removeAll(ChangeAnimation.class);
+        }
+    }
+
+    private boolean animatesChanges() {
+        return mChangeAnimations && !mChangeAnimationsSuppressed && null == mAdapter && ViewCompat.isLaidOut(this);
+    }
+
+    private ChangeAnimation startChange(View child) {
+        ChangeAnimation change = mRunningChanges.get(child);
+        if (null == change) {
+            change = new ChangeAnimation(child);
+            mRunningChanges.put(child, change);
+            mDisplacementAnimator.add(change);
+        }
+        return change;
+    }
+
+    private void endChange(View child) {
+        final ChangeAnimation change = mRunningChanges.get(child);
+        if (null == change) return;
+        mDisplacementAnimator.remove(change);
+    }
+
+    /**
+     * Hands a removed child's appearance to a snapshot in the overlay, so the
+     * child itself is free to be added anywhere right away.
+     */
+    private void fadeOutRemovedChild(View child) {
+        final float alpha = child.getAlpha();
+        final Rect bounds = new Rect(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+        final int translationX = Math.round(child.getTranslationX());
+        final int translationY = Math.round(child.getTranslationY());
+        endChange(child);
+        if (VISIBLE != child.getVisibility() || bounds.isEmpty() || 0 == alpha) return;
+        // children removed out of sight are not worth a snapshot
+        if (!getLocalVisibleRect(mVisibleRect) || !Rect.intersects(mVisibleRect, bounds)) return;
+        Bitmap bitmap = mSnapshotPrefetcher.take(child);
+        if (null == bitmap) bitmap = mSnapshotPool.render(new View[]{child}, 1, bounds);
+        final BitmapDrawable snapshot = new BitmapDrawable(getResources(), bitmap);
+        snapshot.setFilterBitmap(true);
+        bounds.offset(translationX, translationY);
+        snapshot.setBounds(bounds);
+        mDisplacementAnimator.add(new ChangeAnimation(snapshot, alpha));
+    }
+
+    /**
+     * Adds a draggable child to, or removes it from, the selection. Dragging any
+     * selected child moves every selected child as one contiguous block, in
+     * their current relative order. Selection is ignored by a drag already in
+     * progress.
+     */
+    public void setChildSelected(View child, boolean selected) {
+        final DraggableChild draggableChild = mDraggableChildren.get(child);
+        if (null == draggableChild) {
+            Log.e(TAG, child + " is not a draggable child, cannot select.");
+            return;
+        }
+        draggableChild.mSelected = selected;
+    }
+
+    public boolean isChildSelected(View child) {
+        final DraggableChild draggableChild = mDraggableChildren.get(child);
+        return null != draggableChild && draggableChild.mSelected;
+    }
+
+    public int getSelectedChildCount() {
+        int count = 0;
+        for (DraggableChild draggableChild : mDraggableChildren.values()) {
+            if (draggableChild.mSelected) count++;
+        }
+        return count;
+    }
+
+    public void clearSelection() {
+        for (DraggableChild draggableChild : mDraggableChildren.values()) draggableChild.mSelected = false;
+    }
+
+    /**
+     * Backs the layout with an adapter. Only the items inside the visible window
+     * of the enclosing scroll container, plus half a window on either side, are
+     * materialized as children; spacer views stand in for the rest. During a
+     * drag the window only grows, binding the items the container scrolls to
+     * into the drag, and it is trimmed again after the drop. Passing null
+     * removes the adapter and all of its views.
+     */
+    public void setAdapter(Adapter adapter) {
+        if (null != mAdapter) mAdapter.mHost = null;
+        if (mDragItem.mDetecting) mDragItem.stopDetecting();
+        removeAllViews();
+        mRecycledViews.clear();
+        mAdapterViewTypes.clear();
+        mAdapter = adapter;
+        mLeadingSpacer = null;
+        mTrailingSpacer = null;
+        mFirstPosition = 0;
+        mLastPosition = 0;
+        if (null == adapter) return;
+        adapter.mHost = this;
+        mLeadingSpacer = new View(getContext());
+        mTrailingSpacer = new View(getContext());
+        addView(mLeadingSpacer, createSpacerLayoutParams(0));
+        addView(mTrailingSpacer, createSpacerLayoutParams(0));
+        onAdapterDataSetChanged();
+    }
+
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    private void onAdapterDataSetChanged() {
+        if (mDragItem.mDetecting) {
+            mAdapterChangePending = true;
+            return;
+        }
+        mAdapterChangePending = false;
+        recycleAdapterViews();
+        mFirstPosition = 0;
+        mLastPosition = 0;
+        final int count = mAdapter.getItemCount();
+        mItemExtents = new int[count];
+        mItemOffsets = new int[count + 1];
+        updateAdapterOffsets();
+        updateAdapterWindow(true);
+    }
+
+    private void updateAdapterOffsets() {
+        final int count = mItemExtents.length;
+        for (int i = 0; i < count; i++) {
+            mItemOffsets[i + 1] = mItemOffsets[i] + (mItemExtents[i] > 0 ? mItemExtents[i] : mEstimatedItemExtent);
+        }
+        setSpacerExtent(mLeadingSpacer, mItemOffsets[mFirstPosition]);
+        setSpacerExtent(mTrailingSpacer, mItemOffsets[count] - mItemOffsets[mLastPosition]);
+    }
+
+    /**
+     * Records the laid out extents of the materialized items and reports whether
+     * any of them changed.
+     */
+    private boolean measureAdapterItems() {
+        final boolean vertical = getOrientation() == VERTICAL;
+        boolean changed = false;
+        for (int position = mFirstPosition; position < mLastPosition; position++) {
+            final View child = getChildAt(1 + position - mFirstPosition);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final int extent = vertical ? lp.topMargin + child.getHeight() + lp.bottomMargin
+                    : lp.leftMargin + child.getWidth() + lp.rightMargin;
+            if (extent != mItemExtents[position]) {
+                if (!mItemExtentEstimated) {
+                    mEstimatedItemExtent = extent;
+                    mItemExtentEstimated = true;
+                }
+                mItemExtents[position] = extent;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void updateAdapterWindow(boolean force) {
+        if (null == mAdapter || mDragGroupRemoved) return;
+        final boolean dragging = mDragItem.mDetecting;
+        // a window grown during a drag is trimmed back once the drag is over
+        if (!dragging && mAdapterWindowGrown) force = true;
+        final int count = mItemExtents.length;
+        final boolean vertical = getOrientation() == VERTICAL;
+        final int contentStart = vertical ? getPaddingTop() : getPaddingLeft();
+        int visibleStart;
+        int visibleEnd;
+        if (getLocalVisibleRect(mVisibleRect)) {
+            visibleStart = (vertical ? mVisibleRect.top : mVisibleRect.left) - contentStart;
+            visibleEnd = (vertical ? mVisibleRect.bottom : mVisibleRect.right) - contentStart;
+        } else if (force) {
+            visibleStart = 0;
+            visibleEnd = getResources().getDisplayMetrics().heightPixels;
+        } else {
+            return;
+        }
+        final int visibleFirst = adapterPositionAt(visibleStart);
+        final int visibleLast = Math.min(count, adapterPositionAt(visibleEnd - 1) + 1);
+        if (!force && visibleFirst >= mFirstPosition && visibleLast <= mLastPosition) return;
+        final int overscan = (visibleEnd - visibleStart) / 2;
+        final int first = adapterPositionAt(visibleStart - overscan);
+        final int last = Math.min(count, adapterPositionAt(visibleEnd + overscan) + 1);
+        if (dragging) {
+            // children are only ever added to a drag, never taken from under it
+            if (first >= mFirstPosition && last <= mLastPosition) return;
+            mAdapterWindowGrown = true;
+            setAdapterWindow(Math.min(first, mFirstPosition), Math.max(last, mLastPosition));
+        } else {
+            mAdapterWindowGrown = false;
+            setAdapterWindow(first, last);
+        }
+    }
+
+    private int adapterPositionAt(int offset) {
+        int low = 0;
+        int high = mItemExtents.length - 1;
+        int result = 0;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (mItemOffsets[mid] <= offset) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Materializes exactly the items in [first, last), recycling the children
+     * that fell out of the window and binding the ones that entered it.
+     */
+    private void setAdapterWindow(int first, int last) {
+        if (first >= mLastPosition || last <= mFirstPosition) {
+            recycleAdapterViews();
+            mFirstPosition = first;
+            mLastPosition = first;
+        } else {
+            for (; mFirstPosition < first; mFirstPosition++) recycleAdapterView(1);
+            for (; mLastPosition > last; mLastPosition--) recycleAdapterView(mLastPosition - mFirstPosition);
+        }
+        for (; mFirstPosition > first; mFirstPosition--) bindAdapterView(mFirstPosition - 1, 1);
+        for (; mLastPosition < last; mLastPosition++) bindAdapterView(mLastPosition, 1 + mLastPosition - mFirstPosition);
+        setSpacerExtent(mLeadingSpacer, mItemOffsets[mFirstPosition]);
+        setSpacerExtent(mTrailingSpacer, mItemOffsets[mItemExtents.length] - mItemOffsets[mLastPosition]);
+    }
+
+    private void recycleAdapterViews() {
+        for (; mLastPosition > mFirstPosition; mLastPosition--) recycleAdapterView(mLastPosition - mFirstPosition);
+    }
+
+    private void bindAdapterView(int position, int index) {
+        final int viewType = mAdapter.getItemViewType(position);
+        final ArrayList<View> recycled = mRecycledViews.get(viewType);
+        final View view = null != recycled && !recycled.isEmpty()
+                ? recycled.remove(recycled.size() - 1) : mAdapter.onCreateView(this, viewType);
+        mAdapter.onBindView(view, position);
+        mAdapterViewTypes.put(view, viewType);
+        addView(view, index);
+        setViewDraggable(view, mAdapter.getDragHandle(view));
+    }
+
+    private void recycleAdapterView(int index) {
+        final View view = getChildAt(index);
+        removeViewAt(index);
+        mAdapter.onViewRecycled(view);
+        final Integer viewType = mAdapterViewTypes.remove(view);
+        if (null == viewType) return;
+        ArrayList<View> recycled = mRecycledViews.get(viewType);
+        if (null == recycled) {
+            recycled = new ArrayList<>();
+            mRecycledViews.put(viewType, recycled);
+        }
+        recycled.add(view);
+    }
+
+    private void onAdapterDragFinished(int[] moves) {
+        // the spacers never move, so child index i is adapter position i - 1 + mFirstPosition
+        for (int i = 0; null != moves && i < moves.length; i += 2) {
+            if (moves[i] <= 0 || moves[i + 1] <= 0) continue;
+            final int from = mFirstPosition + moves[i] - 1;
+            final int to = mFirstPosition + moves[i + 1] - 1;
+            final int extent = mItemExtents[from];
+            if (from < to) {
+                System.arraycopy(mItemExtents, from + 1, mItemExtents, from, to - from);
+            } else {
+                System.arraycopy(mItemExtents, to, mItemExtents, to + 1, from - to);
+            }
+            mItemExtents[to] = extent;
+            mAdapter.onItemMoved(from, to);
+        }
+        if (mAdapterChangePending) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (null != mAdapter) onAdapterDataSetChanged();
+                }
+            });
+        } else {
+            removeCallbacks(mAdapterExtentsUpdate);
+            post(mAdapterExtentsUpdate);
+        }
+    }
+
+    private LayoutParams createSpacerLayoutParams(int extent) {
+        return getOrientation() == VERTICAL
+                ? new LayoutParams(LayoutParams.MATCH_PARENT, extent)
+                : new LayoutParams(extent, LayoutParams.MATCH_PARENT);
+    }
+
+    private void setSpacerExtent(View spacer, int extent) {
+        if (null == spacer) return;
+        final ViewGroup.LayoutParams lp = spacer.getLayoutParams();
+        if (getOrientation() == VERTICAL) {
+            if (lp.height == extent) return;
+            lp.height = extent;
+        } else {
+            if (lp.width == extent) return;
+            lp.width = extent;
+        }
+        spacer.setLayoutParams(lp);
+    }
+
+    /**
+     * Supplies and binds the children of an adapter-backed DragLinearLayout.
+     * Dragging reorders the bound views directly; {@link #onItemMoved} is called
+     * once the drop has settled so the backing data can be moved to match.
+     */
+    public abstract static class Adapter {
+        private DragLinearLayout mHost;
+
+        public abstract int getItemCount();
+
+        public int getItemViewType(int position) {
+            return 0;
+        }
+
+        public abstract View onCreateView(ViewGroup parent, int viewType);
+
+        public abstract void onBindView(View view, int position);
+
+        public void onViewRecycled(View view) {
+        }
+
+        public View getDragHandle(View view) {
+            return view;
+        }
+
+        public abstract void onItemMoved(int fromPosition, int toPosition);
+
+        public final void notifyDataSetChanged() {
+            if (null != mHost) mHost.onAdapterDataSetChanged();
+        }
+    }
+
+    /**
+     * Creates and binds the children of a layout filled through
+     * {@link #submitItems}. Keys identify items across submissions and must be
+     * stable and unique; the view of an item whose key is kept is reused.
+     */
+    public abstract static class ItemBinder<T> {
+        public abstract Object getKey(T item);
+
+        public abstract View onCreateView(ViewGroup parent, T item);
+
+        public abstract void onBindView(View view, T item);
+
+        /**
+         * Returning true skips rebinding a kept view to its updated item.
+         */
+        public boolean areContentsTheSame(T oldItem, T newItem) {
+            return oldItem == newItem;
+        }
+
+        public View getDragHandle(View view) {
+            return view;
+        }
+    }
+
+    private static class KeyedItem {
+        private final Object mKey;
+        private Object mItem;
+
+        KeyedItem(Object key, Object item) {
+            mKey = key;
+            mItem = item;
+        }
+    }
+
+    /**
+     * Moves the child at index {@code from} to index {@code to}, animating every
+     * draggable child whose position changes.
+     */
+    public void moveChild(int from, int to) {
+        final int count = getChildCount();
+        if (from < 0 || from >= count || to < 0 || to >= count) {
+            throw new IllegalArgumentException("Cannot move child " + from + " to " + to
+                    + " in a layout of " + count + " children.");
+        }
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        if (from < to) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else {
+            System.arraycopy(order, to, order, to + 1, from - to);
+        }
+        order[to] = from;
+        applyOrder(order);
+    }
+
+    /**
+     * Reorders the children so that the child now at index {@code order[i]} ends
+     * up at index i. Children on the longest run that is already in order stay
+     * attached; only the rest are detached and re-attached, followed by a
+     * single layout pass. Draggable children whose position changes are animated
+     * from where they were.
+     */
+    public void applyOrder(int[] order) {
+        final int count = getChildCount();
+        if (null == order || order.length != count) {
+            throw new IllegalArgumentException("Order must hold one index per child.");
+        }
+        final boolean[] seen = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            if (order[i] < 0 || order[i] >= count || seen[order[i]]) {
+                throw new IllegalArgumentException("Order is not a permutation of the child indices.");
+            }
+            seen[order[i]] = true;
+        }
+        if (mDragItem.mDetecting) {
+            Log.e(TAG, "Cannot reorder children while a drag is in progress.");
+            return;
+        }
+        if (null != mAdapter) {
+            Log.e(TAG, "Cannot reorder the children of an adapter-backed layout.");
+            return;
+        }
+        final int[] moves = ReorderEngine.computeMoves(order, count);
+        if (0 == moves.length) return;
+
+        capturePendingMoves(null);
+        applyMoves(moves);
+        requestLayout();
+        invalidate();
+    }
+
+    private void applyMoves(int[] moves) {
+        for (int i = 0; i < moves.length; i += 2) {
+            final View child = getChildAt(moves[i]);
+            final ViewGroup.LayoutParams lp = child.getLayoutParams();
+            detachViewFromParent(child);
+            attachViewToParent(child, moves[i + 1], lp);
+        }
+    }
+
+    /**
+     * Replaces the children with one view per item, reusing the views of items
+     * whose key was already shown. Kept children are rebound in place and only
+     * moved if their order changed; only items with new keys are created and
+     * only those whose key is gone are removed. Draggable children that stay
+     * animate to their new positions. Children not added through this method are
+     * removed, as are all children when the binder changes.
+     * <p>
+     * Submitting while a drag or a drop into this layout is in progress defers
+     * the update until it has settled; only the latest deferred list is applied.
+     */
+    public <T> void submitItems(List<T> items, ItemBinder<T> binder) {
+        if (null == items || null == binder) {
+            throw new IllegalArgumentException("Items and their binder must not be null.");
+        }
+        final HashMap<Object, T> byKey = new HashMap<>();
+        for (T item : items) {
+            final Object key = binder.getKey(item);
+            if (null == key || null != byKey.put(key, item)) {
+                throw new IllegalArgumentException("Every item needs a unique, non-null key; got " + key + ".");
+            }
+        }
+        if (null != mAdapter) {
+            Log.e(TAG, "Cannot submit items to an adapter-backed layout.");
+            return;
+        }
+        if (mDragItem.mDetecting || mReceiving) {
+            mPendingItems = new ArrayList<>(items);
+            mPendingItemBinder = binder;
+            return;
+        }
+        mPendingItems = null;
+        mPendingItemBinder = null;
+        applyItems(items, binder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void submitItemsUnchecked(List<?> items, ItemBinder<T> binder) {
+        applyItems((List<T>) items, binder);
+    }
+
+    private void schedulePendingItems() {
+        if (null == mPendingItems) return;
+        removeCallbacks(mPendingItemsUpdate);
+        post(mPendingItemsUpdate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void applyItems(List<T> items, ItemBinder<T> binder) {
+        final int itemCount = items.size();
+        final HashMap<Object, Integer> newIndices = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) newIndices.put(binder.getKey(items.get(i)), i);
+
+        capturePendingMoves(null);
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            final KeyedItem keyedItem = mKeyedItems.get(getChildAt(i));
+            if (binder != mItemBinder || null == keyedItem || !newIndices.containsKey(keyedItem.mKey)) {
+                removeViewAt(i);
+            }
+        }
+        mItemBinder = binder;
+
+        // sort the kept children by their new index with the fewest detach and re-attach pairs
+        final int keptCount = getChildCount();
+        final int[] newIndexOfChild = new int[keptCount];
+        final int[] order = new int[keptCount];
+        for (int i = 0; i < keptCount; i++) {
+            newIndexOfChild[i] = newIndices.get(mKeyedItems.get(getChildAt(i)).mKey);
+            order[i] = i;
+        }
+        sortByKey(order, newIndexOfChild, keptCount);
+        applyMoves(ReorderEngine.computeMoves(order, keptCount));
+
+        for (int i = 0; i < itemCount; i++) {
+            final T item = items.get(i);
+            final View existing = i < getChildCount() ? getChildAt(i) : null;
+            final KeyedItem keyedItem = null != existing ? mKeyedItems.get(existing) : null;
+            if (null != keyedItem && keyedItem.mKey.equals(binder.getKey(item))) {
+                if (!binder.areContentsTheSame((T) keyedItem.mItem, item)) binder.onBindView(existing, item);
+                keyedItem.mItem = item;
+                continue;
+            }
+            final View view = binder.onCreateView(this, item);
+            binder.onBindView(view, item);
+            addView(view, i);
+            setViewDraggable(view, binder.getDragHandle(view));
+            mKeyedItems.put(view, new KeyedItem(binder.getKey(item), item));
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Insertion sort of {@code order} by {@code keys[order[i]]}; the kept
+     * children are usually nearly in order already.
+     */
+    private static void sortByKey(int[] order, int[] keys, int count) {
+        for (int i = 1; i < count; i++) {
+            final int value = order[i];
+            int j = i - 1;
+            for (; j >= 0 && keys[order[j]] > keys[value]; j--) order[j + 1] = order[j];
+            order[j + 1] = value;
+        }
+    }
+
+    /**
+     * Records where the draggable children, or all children when change
+     * animations are on, are now, so the next layout pass can animate the ones
+     * it moves. Positions captured by an earlier call that has not been laid out
+     * yet are kept.
+     *
+     * @param skip a child that was just added and has no position yet, or null
+     */
+    private void capturePendingMoves(View skip) {
+        if (mPendingMoveCount > 0) return;
+        final int count = getChildCount();
+        if (mPendingMoveViews.length < count + 1) {
+            mPendingMoveViews = new View[count + 1];
+            mPendingMoveStarts = new float[count + 1];
+        }
+        final boolean vertical = getOrientation() == VERTICAL;
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (child == skip || !mChangeAnimations && !mDraggableChildren.containsKey(child)) continue;
+            mPendingMoveViews[mPendingMoveCount] = child;
+            mPendingMoveStarts[mPendingMoveCount] = vertical ? child.getY() : child.getX();
+            mPendingMoveCount++;
+        }
+    }
+
+    private void animatePendingMoves() {
+        final boolean vertical = getOrientation() == VERTICAL;
+        for (int i = 0; i < mPendingMoveCount; i++) {
+            final View child = mPendingMoveViews[i];
+            mPendingMoveViews[i] = null;
+            final float start = mPendingMoveStarts[i];
+            final float end = vertical ? child.getTop() : child.getLeft();
+            if (start == end || mDragItem.contains(child)) continue;
+            if (mDraggableChildren.containsKey(child)) {
+                animateDisplacedChild(child, start);
+            } else if (mChangeAnimations && this == child.getParent()) {
+                startChange(child).moveFrom(start - end);
+            }
+        }
+        mPendingMoveCount = 0;
+    }
+
+    /**
+     * Lets drags started in this layout be dropped into any other layout sharing
+     * the coordinator, and lets this layout receive theirs. Pass null to leave.
+     * The coordinator only references this layout while it is attached to a
+     * window, so it may outlive the screen.
+     */
+    public void setDragCoordinator(DragCoordinator dragCoordinator) {
+        if (mDragCoordinator == dragCoordinator) return;
+        if (mDragItem.mDetecting) abortDrag();
+        if (mReceiving) abortReceiving();
+        if (null != mDragCoordinator) mDragCoordinator.mLayouts.remove(this);
+        mDragCoordinator = dragCoordinator;
+        if (null != dragCoordinator && isAttachedToWindow()) dragCoordinator.mLayouts.add(this);
+    }
+
+    private boolean canTransferDrag() {
+        return null == mAdapter && !mDragItem.mLive && 1 == mDragItem.mGroupSize;
+    }
+
+    private boolean canReceiveDrag() {
+        return null == mAdapter && !mDragItem.mDetecting && isShown();
+    }
+
+    /**
+     * Starts showing where a child dragged in from another layout would land.
+     * The drop slot is shown as a gap the size of the incoming child.
+     */
+    private void startReceiving(View child) {
+        beginSlotOrder();
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        mReceiveExtent = getOrientation() == VERTICAL
+                ? lp.topMargin + child.getHeight() + lp.bottomMargin
+                : lp.leftMargin + child.getWidth() + lp.rightMargin;
+        mReceiveSlot = mEngine.mCount;
+        mReceiving = true;
+    }
+
+    /**
+     * Moves the gap to the slot under the given point. The gap itself counts as
+     * the current slot, so the children it pushes aside are not hit tested at
+     * their shifted positions.
+     */
+    private void updateReceiving(int x, int y) {
+        int coordinate = getOrientation() == VERTICAL ? y : x;
+        final int gapStart = mEngine.mSlotEdges[mReceiveSlot];
+        if (coordinate >= gapStart + mReceiveExtent) {
+            coordinate -= mReceiveExtent;
+        } else if (coordinate >= gapStart) {
+            return;
+        }
+        final int slot = mEngine.firstSlotWithMidAfter(coordinate);
+        if (slot != mReceiveSlot) moveReceiveGap(slot);
+    }
+
+    private void moveReceiveGap(int slot) {
+        final boolean vertical = getOrientation() == VERTICAL;
+        final int first = Math.min(slot, mReceiveSlot);
+        final int last = Math.max(slot, mReceiveSlot) - 1;
+        for (int i = first; i <= last; i++) {
+            final View child = getChildAtSlot(i);
+            mDisplacedStarts[i - first] = vertical ? child.getY() : child.getX();
+        }
+        mReceiveSlot = slot;
+        applySlotLayout(first, last);
+        for (int i = first; i <= last; i++) animateDisplacedChild(getChildAtSlot(i), mDisplacedStarts[i - first]);
+    }
+
+    private void stopReceiving() {
+        moveReceiveGap(mEngine.mCount);
+        mReceiving = false;
+        mEngine.end();
+        schedulePendingItems();
+    }
+
+    /**
+     * Drops the gap of a receiving layout whose children changed; the
+     * coordinator starts over with the new children on the next move.
+     */
+    private void abortReceiving() {
+        mReceiving = false;
+        mEngine.end();
+        if (null != mDragCoordinator && this == mDragCoordinator.mTarget) mDragCoordinator.mTarget = null;
+        requestLayout();
+        schedulePendingItems();
+    }
+
+    /**
+     * Drops the dragged child into the layout currently showing a gap for it.
+     * The child keeps its drag handle, and it is animated from the shadow's
+     * position into the gap.
+     */
+    private void transferDraggedChild(DragLinearLayout destination) {
+        final View child = mDragItem.mView;
+        final View dragHandle = mDraggableChildren.get(child).mDragHandle;
+        final int toPosition = destination.mReceiveSlot;
+        final int[] location = mDragItem.mShadowLocation;
+        destination.getLocationInWindow(location);
+        final float start = destination.getOrientation() == VERTICAL
+                ? mDragItem.mShadow.getY() - location[1] : mDragItem.mShadow.getX() - location[0];
+
+        // the child's moves inside this layout are reported before it leaves, so
+        // fromPosition is an index into the order the host already knows about
+        final int startPosition = mDragItem.mStartPosition;
+        commitSlotOrder();
+        final int fromPosition = indexOfChild(child);
+        final int[] moves = null != mReorderListener
+                ? mEngine.pendingMoves() : null;
+        abortDrag();
+        if (null != moves && moves.length > 0) mReorderListener.onReorder(startPosition, fromPosition, moves);
+        capturePendingMoves(null);
+        mChangeAnimationsSuppressed = true;
+        removeView(child);
+        mChangeAnimationsSuppressed = false;
+
+        destination.mReceiving = false;
+        destination.mEngine.end();
+        destination.capturePendingMoves(null);
+        destination.mChangeAnimationsSuppressed = true;
+        destination.addView(child, toPosition);
+        destination.mChangeAnimationsSuppressed = false;
+        destination.setViewDraggable(child, dragHandle);
+        destination.mPendingMoveViews[destination.mPendingMoveCount] = child;
+        destination.mPendingMoveStarts[destination.mPendingMoveCount] = start;
+        destination.mPendingMoveCount++;
+        destination.schedulePendingItems();
+        if (null != mDragCoordinator.mTransferListener) {
+            mDragCoordinator.mTransferListener.onTransfer(child, this, fromPosition, destination, toPosition);
+        }
+    }
+
+    public void setOnReorderListener(OnReorderListener reorderListener) {
+        mReorderListener = reorderListener;
+    }
+
+    /**
+     * Connects several DragLinearLayouts so a child dragged out of one can be
+     * dropped into another. The drag stays owned by the layout it started in,
+     * which keeps receiving the touch events; the coordinator hands its position
+     * to whichever other layout is under the finger. The drag shadow is drawn
+     * over the whole window so it stays visible between layouts.
+     * <p>
+     * Adapter-backed layouts, live-view drags and group drags are not
+     * transferred.
+     */
+    public static class DragCoordinator {
+        private final ArrayList<DragLinearLayout> mLayouts = new ArrayList<>();
+        private final int[] mLocation = new int[2];
+        private DragLinearLayout mSource;
+        private DragLinearLayout mTarget;
+        private OnTransferListener mTransferListener;
+
+        public void setOnTransferListener(OnTransferListener transferListener) {
+            mTransferListener = transferListener;
+        }
+
+        /**
+         * @return whether the drag is over another layout, which then tracks it
+         */
+        boolean onDragMoved(DragLinearLayout source) {
+            source.getLocationOnScreen(mLocation);
+            final int x = mLocation[0] + source.mLastMotionX;
+            final int y = mLocation[1] + source.mLastMotionY;
+            final DragLinearLayout target = source.canTransferDrag() ? findLayoutAt(source, x, y) : null;
+            if (target != mTarget) {
+                if (null != mTarget) mTarget.stopReceiving();
+                mSource = source;
+                mTarget = target;
+                if (null != target) target.startReceiving(source.mDragItem.mView);
+            }
+            if (null == target) return false;
+            target.getLocationOnScreen(mLocation);
+            target.updateReceiving(x - mLocation[0], y - mLocation[1]);
+            return true;
+        }
+
+        private DragLinearLayout findLayoutAt(DragLinearLayout source, int x, int y) {
+            for (int i = 0; i < mLayouts.size(); i++) {
+                final DragLinearLayout layout = mLayouts.get(i);
+                if (layout == source || !(layout == mTarget || layout.canReceiveDrag())) continue;
+                layout.getLocationOnScreen(mLocation);
+                if (x >= mLocation[0] && x < mLocation[0] + layout.getWidth()
+                        && y >= mLocation[1] && y < mLocation[1] + layout.getHeight()) {
+                    return layout;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the child was dropped into another layout
+         */
+        boolean drop(DragLinearLayout source) {
+            final DragLinearLayout target = mTarget;
+            if (source != mSource || null == target) return false;
+            mSource = null;
+            mTarget = null;
+            source.transferDraggedChild(target);
+            return true;
+        }
+
+        void onDragEnded(DragLinearLayout source) {
+            if (source != mSource) return;
+            if (null != mTarget) mTarget.stopReceiving();
+            mSource = null;
+            mTarget = null;
+        }
+    }
+
+    public interface OnTransferListener {
+
+        /**
+         * @param child           the transferred child
+         * @param source          the layout the drag started in
+         * @param fromPosition    child index of the child in the source when it left,
+         *                        after the moves already reported to the source's
+         *                        {@link OnReorderListener}
+         * @param destination     the layout the child was dropped into
+         * @param toPosition      child index of the child in the destination
+         */
+        void onTransfer(View child, DragLinearLayout source, int fromPosition,
+                        DragLinearLayout destination, int toPosition);
+    }
+
+    /**
+     * Reports the outcome of a drag once its drop animation has finished, or
+     * just before the dragged child leaves for another layout, so the new order
+     * can be persisted with a targeted update.
+     */
+    public interface OnReorderListener {
+
+        /**
+         * @param fromPosition child index of the dragged view when the drag started
+         * @param toPosition   child index of the dragged view after the drop
+         * @param moves        (from, to) child index pairs which, applied in order as
+         *                     {@code list.add(to, list.remove(from))}, turn the old
+         *                     order into the new one
+         */
+        void onReorder(int fromPosition, int toPosition, int[] moves);
+    }
+
+    /**
+     * Opts in to per-drag performance metrics; pass null to stop collecting them.
+     */
+    public void setDragMetricsListener(DragMetricsListener dragMetricsListener) {
+        mDragMetricsListener = dragMetricsListener;
+    }
+
+    /**
+     * Opts in to recording every single-item drag as a {@link DragTrace}; pass
+     * null to stop recording. A drag whose children change while it runs is
+     * not reported, since its trace no longer describes the children.
+     */
+    public void setDragTraceListener(DragTraceListener dragTraceListener) {
+        mDragTraceListener = dragTraceListener;
+    }
+
+    public interface DragTraceListener {
+
+        /**
+         * Called once per recorded drag after it has settled.
+         */
+        void onDragTrace(DragTrace trace);
+    }
+
+    public interface DragMetricsListener {
+
+        /**
+         * Called once per drag after it has settled. The metrics instance is
+         * reused for the next drag, so copy out anything that must be kept.
+         */
+        void onDragMetrics(DragMetrics metrics);
+    }
+
+    /**
+     * Performance figures of a single drag, from the long-press or handle touch
+     * that started detecting it to the end of its drop animation.
+     */
+    public static final class DragMetrics {
+        private long mLongPressToDragNanos;
+        private int mSnapshotBytes;
+        private long mSnapshotCaptureNanos;
+        private int mSwapCount;
+        private int mRelayoutCount;
+        private int mFrameCount;
+        private long mTotalFrameNanos;
+        private long mMaxFrameNanos;
+        private int mJankyFrameCount;
+
+        void reset() {
+            mLongPressToDragNanos = 0;
+            mSnapshotBytes = 0;
+            mSnapshotCaptureNanos = 0;
+            mSwapCount = 0;
+            mRelayoutCount = 0;
+            mFrameCount = 0;
+            mTotalFrameNanos = 0;
+            mMaxFrameNanos = 0;
+            mJankyFrameCount = 0;
+        }
+
+        /**
+         * Time to the first drawn drag frame from the long-press, or, for drags
+         * started from a handle, from the touch crossing the touch slop.
+         */
+        public long getLongPressToDragNanos() {
+            return mLongPressToDragNanos;
+        }
+
+        /** Size of the drag snapshot, 0 for live-view drags. */
+        public int getSnapshotBytes() {
+            return mSnapshotBytes;
+        }
+
+        public long getSnapshotCaptureNanos() {
+            return mSnapshotCaptureNanos;
+        }
+
+        /** Number of children displaced by the dragged item. */
+        public int getSwapCount() {
+            return mSwapCount;
+        }
+
+        /** Number of layout passes this layout ran while the drag was active. */
+        public int getRelayoutCount() {
+            return mRelayoutCount;
+        }
+
+        /** Number of frames in which the drag position was applied. */
+        public int getFrameCount() {
+            return mFrameCount;
+        }
+
+        /** Total and worst-case time spent applying the drag position in a frame. */
+        public long getTotalFrameNanos() {
+            return mTotalFrameNanos;
+        }
+
+        public long getMaxFrameNanos() {
+            return mMaxFrameNanos;
+        }
+
+        public int getJankyFrameCount() {
+            return mJankyFrameCount;
+        }
+    }
+
     public interface ILongClickToDragListener {
 
         void onLongClickToDrag(View dragableView);
@@ -0,0 +1,207 @@
+package com.example.testaddviewphoto;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A recorded single-item drag of a {@link DragLinearLayout}: the slot layout
+ * when the drag started and every drag offset the layout applied after that,
+ * as the engine saw it: after coalescing, prediction and auto-scroll.
+ * Traces have no Android dependencies, so they can be written out on a device
+ * with {@link #writeTo} and replayed against the reorder engine on a plain JVM
+ * with {@link #replay()}.
+ */
+public final class DragTrace {
+    public static final int EVENT_MOVE = 0;
+    public static final int EVENT_UP = 1;
+    private static final int FORMAT_VERSION = 1;
+
+    private final int[] mExtents;
+    private final boolean[] mDraggable;
+    private final int mStartEdge;
+    private final int mStartPosition;
+    private final int mItemStart;
+    private final int mItemSize;
+    private final int mHysteresis;
+    private int mEventCount;
+    private int[] mActions = new int[16];
+    private long[] mEventTimes = new long[16];
+    private int[] mOffsets = new int[16];
+
+    DragTrace(int[] extents, boolean[] draggable, int count, int startEdge, int startPosition, int itemStart,
+              int itemSize, int hysteresis) {
+        mExtents = new int[count];
+        mDraggable = new boolean[count];
+        System.arraycopy(extents, 0, mExtents, 0, count);
+        System.arraycopy(draggable, 0, mDraggable, 0, count);
+        mStartEdge = startEdge;
+        mStartPosition = startPosition;
+        mItemStart = itemStart;
+        mItemSize = itemSize;
+        mHysteresis = hysteresis;
+    }
+
+    /**
+     * @param eventTimeMillis uptime when the layout applied the offset
+     * @param offset          distance the item has been dragged along the orientation
+     */
+    void addEvent(int action, long eventTimeMillis, int offset) {
+        if (mEventCount == mActions.length) {
+            final int capacity = 2 * mEventCount;
+            final int[] actions = new int[capacity];
+            final long[] eventTimes = new long[capacity];
+            final int[] offsets = new int[capacity];
+            System.arraycopy(mActions, 0, actions, 0, mEventCount);
+            System.arraycopy(mEventTimes, 0, eventTimes, 0, mEventCount);
+            System.arraycopy(mOffsets, 0, offsets, 0, mEventCount);
+            mActions = actions;
+            mEventTimes = eventTimes;
+            mOffsets = offsets;
+        }
+        mActions[mEventCount] = action;
+        mEventTimes[mEventCount] = eventTimeMillis;
+        mOffsets[mEventCount] = offset;
+        mEventCount++;
+    }
+
+    public int getChildCount() {
+        return mExtents.length;
+    }
+
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    public int getEventAction(int event) {
+        return mActions[event];
+    }
+
+    public long getEventTimeMillis(int event) {
+        return mEventTimes[event];
+    }
+
+    public int getEventOffset(int event) {
+        return mOffsets[event];
+    }
+
+    /**
+     * Runs the recorded events through a fresh reorder engine set up like the
+     * layout was when the drag started, timing each event.
+     */
+    public ReplayResult replay() {
+        final ReorderEngine engine = new ReorderEngine();
+        final int count = mExtents.length;
+        engine.begin(count);
+        for (int i = 0; i < count; i++) {
+            engine.setExtent(i, mExtents[i]);
+            engine.setDraggable(i, mDraggable[i]);
+        }
+        engine.setStartEdge(mStartEdge);
+        engine.buildDraggableTables();
+        engine.updateEdges(0, count - 1);
+
+        final ReplayResult result = new ReplayResult();
+        int position = mStartPosition;
+        for (int i = 0; i < mEventCount; i++) {
+            if (EVENT_MOVE != mActions[i]) continue;
+            final long startNanos = System.nanoTime();
+            final int target = engine.findTargetSlot(position, 1, mItemStart + mOffsets[i], mItemSize, mHysteresis);
+            if (target != position) {
+                engine.moveTo(position, target);
+                position = target;
+            }
+            final long eventNanos = System.nanoTime() - startNanos;
+            result.mEventCount++;
+            result.mTotalEventNanos += eventNanos;
+            result.mMaxEventNanos = Math.max(result.mMaxEventNanos, eventNanos);
+        }
+        result.mSwapCount = engine.mSwapCount;
+        result.mMoveCount = engine.mMoveCount;
+        result.mEndPosition = position;
+        return result;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(mExtents.length);
+        for (int i = 0; i < mExtents.length; i++) {
+            out.writeInt(mExtents[i]);
+            out.writeBoolean(mDraggable[i]);
+        }
+        out.writeInt(mStartEdge);
+        out.writeInt(mStartPosition);
+        out.writeInt(mItemStart);
+        out.writeInt(mItemSize);
+        out.writeInt(mHysteresis);
+        out.writeInt(mEventCount);
+        for (int i = 0; i < mEventCount; i++) {
+            out.writeByte(mActions[i]);
+            out.writeLong(mEventTimes[i]);
+            out.writeInt(mOffsets[i]);
+        }
+    }
+
+    public static DragTrace readFrom(DataInput in) throws IOException {
+        final int version = in.readInt();
+        if (FORMAT_VERSION != version) {
+            throw new IOException("Unsupported drag trace version " + version + ".");
+        }
+        final int count = in.readInt();
+        final int[] extents = new int[count];
+        final boolean[] draggable = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            extents[i] = in.readInt();
+            draggable[i] = in.readBoolean();
+        }
+        final DragTrace trace = new DragTrace(extents, draggable, count, in.readInt(), in.readInt(), in.readInt(),
+                in.readInt(), in.readInt());
+        final int eventCount = in.readInt();
+        for (int i = 0; i < eventCount; i++) {
+            trace.addEvent(in.readByte(), in.readLong(), in.readInt());
+        }
+        return trace;
+    }
+
+    /**
+     * What a replayed trace cost the reorder engine. A move is one change of the
+     * dragged item's slot, however many children it displaced; the layout
+     * follows each with a single batch of child offsets.
+     */
+    public static final class ReplayResult {
+        private int mEventCount;
+        private int mSwapCount;
+        private int mMoveCount;
+        private int mEndPosition;
+        private long mTotalEventNanos;
+        private long mMaxEventNanos;
+
+        public int getEventCount() {
+            return mEventCount;
+        }
+
+        public int getSwapCount() {
+            return mSwapCount;
+        }
+
+        public int getMoveCount() {
+            return mMoveCount;
+        }
+
+        public int getEndPosition() {
+            return mEndPosition;
+        }
+
+        public long getTotalEventNanos() {
+            return mTotalEventNanos;
+        }
+
+        public long getMaxEventNanos() {
+            return mMaxEventNanos;
+        }
+
+        public long getAverageEventNanos() {
+            return 0 == mEventCount ? 0 : mTotalEventNanos / mEventCount;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.testaddviewphoto;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Drives any number of animations from one Choreographer frame callback, so
+ * all the moving children of a layout cost a single callback per frame. The
+ * time step is clamped, so a long frame cannot throw a spring far past its
+ * target.
+ */
+final class FrameAnimator implements Choreographer.FrameCallback {
+    private static final long MAX_FRAME_NANOS = 50000000L;
+    private final ArrayList<Animation> mAnimations = new ArrayList<>();
+    private long mLastFrameTimeNanos;
+
+    interface Animation {
+        /**
+         * @return whether the animation is still running
+         */
+        boolean step(long frameNanos);
+
+        /**
+         * Called once the animation has stopped, whether it finished or was
+         * removed.
+         */
+        void end();
+    }
+
+    void add(Animation animation) {
+        mAnimations.add(animation);
+        if (1 == mAnimations.size()) {
+            mLastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops and ends the animation if it is running.
+     */
+    void remove(Animation animation) {
+        if (!mAnimations.remove(animation)) return;
+        if (mAnimations.isEmpty()) Choreographer.getInstance().removeFrameCallback(this);
+        animation.end();
+    }
+
+    /**
+     * Stops and ends every running animation of the given type.
+     */
+    void removeAll(Class<? extends Animation> type) {
+        for (int i = mAnimations.size() - 1; i >= 0; i--) {
+            final Animation animation = mAnimations.get(i);
+            if (!type.isInstance(animation)) continue;
+            mAnimations.remove(i);
+            animation.end();
+        }
+        if (mAnimations.isEmpty()) Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * Stops and ends every running animation.
+     */
+    void clear() {
+        removeAll(Animation.class);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        final long frameNanos = 0 == mLastFrameTimeNanos ? MAX_FRAME_NANOS / 3
+                : Math.min(MAX_FRAME_NANOS, frameTimeNanos - mLastFrameTimeNanos);
+        mLastFrameTimeNanos = frameTimeNanos;
+        for (int i = mAnimations.size() - 1; i >= 0; i--) {
+            final Animation animation = mAnimations.get(i);
+            if (!animation.step(frameNanos)) {
+                mAnimations.remove(i);
+                animation.end();
+            }
+        }
+        if (!mAnimations.isEmpty()) Choreographer.getInstance().postFrameCallback(this);
+    }
+}
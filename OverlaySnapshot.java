@@ -0,0 +1,77 @@
+package com.example.testaddviewphoto;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.view.ViewGroupOverlay;
+import android.widget.ImageView;
+
+/**
+ * A snapshot shown in an overlay as a View of its own. Moving or fading it
+ * only changes the View's render properties, so the host's display list is
+ * not re-recorded every frame, as it is for a Drawable in the overlay.
+ */
+final class OverlaySnapshot {
+    private final ImageView mView;
+    private ViewGroupOverlay mOverlay;
+    private BitmapDrawable mDrawable;
+
+    OverlaySnapshot(Context context) {
+        mView = new ImageView(context);
+        // downscaled snapshots are stretched back up to their bounds
+        mView.setScaleType(ImageView.ScaleType.FIT_XY);
+    }
+
+    boolean isShowing() {
+        return null != mOverlay;
+    }
+
+    /**
+     * Shows the snapshot in the overlay at the drawable's bounds, untranslated
+     * and fully opaque.
+     */
+    void show(ViewGroupOverlay overlay, BitmapDrawable drawable) {
+        final Rect bounds = drawable.getBounds();
+        mView.layout(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        mView.setTranslationX(0);
+        mView.setTranslationY(0);
+        mView.setAlpha(1f);
+        mView.setImageDrawable(drawable);
+        mDrawable = drawable;
+        mOverlay = overlay;
+        overlay.add(mView);
+    }
+
+    void setTranslation(float translationX, float translationY) {
+        mView.setTranslationX(translationX);
+        mView.setTranslationY(translationY);
+    }
+
+    void setAlpha(float alpha) {
+        mView.setAlpha(alpha);
+    }
+
+    float getX() {
+        return mView.getX();
+    }
+
+    float getY() {
+        return mView.getY();
+    }
+
+    /**
+     * Takes the snapshot out of the overlay.
+     *
+     * @return the bitmap that was shown, for the caller to release
+     */
+    Bitmap hide() {
+        if (null == mOverlay) return null;
+        mOverlay.remove(mView);
+        mOverlay = null;
+        mView.setImageDrawable(null);
+        final Bitmap bitmap = mDrawable.getBitmap();
+        mDrawable = null;
+        return bitmap;
+    }
+}
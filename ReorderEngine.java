@@ -0,0 +1,486 @@
+package com.example.testaddviewphoto;
+
+import java.util.Arrays;
+
+/**
+ * The drag-time ordering model behind {@link DragLinearLayout}, free of any
+ * View so it can also run on a plain JVM, for instance to replay a recorded
+ * {@link DragTrace}.
+ * <p>
+ * Children are identified by their index when the drag began. The engine keeps
+ * the slot each child currently occupies, every child's extent along the
+ * layout's orientation and the prefix sums of those extents in slot order, and
+ * decides which slot a dragged item belongs in. The layout turns the result
+ * into View offsets and animations.
+ */
+final class ReorderEngine {
+    /** Default distance, in dp, a dragged item must cross past a midpoint to swap. */
+    static final float SWAP_HYSTERESIS_DP = 4;
+    /** Child index at each slot. */
+    int[] mSlotOrder = new int[0];
+    /**
+     * Child index at each slot when the drag began, or when the children last
+     * changed during it, before any commit.
+     */
+    int[] mPermutation = new int[0];
+    /** Extent of each child, margins included, by child index. */
+    int[] mExtents = new int[0];
+    /** Whether each child, by child index, can be dragged and displaced. */
+    boolean[] mDraggable = new boolean[0];
+    /** Leading edge of each slot; {@code mSlotEdges[mCount]} is the trailing edge. */
+    int[] mSlotEdges = new int[1];
+    /** Child indices displaced by the last move. */
+    int[] mDisplaced = new int[0];
+    int mCount;
+    boolean mDirty;
+    int mSwapCount;
+    int mMoveCount;
+    private int[] mNextDraggableSlots = new int[0];
+    private int[] mPreviousDraggableSlots = new int[0];
+    private int[] mCommittedExtents = new int[0];
+    private boolean[] mCommittedDraggable = new boolean[0];
+
+    /**
+     * Starts a drag over {@code count} children in identity order. Callers then
+     * set every child's extent and draggability and the start edge, and call
+     * {@link #buildDraggableTables()} and {@link #updateEdges}.
+     */
+    void begin(int count) {
+        if (mSlotOrder.length < count) {
+            mSlotOrder = new int[count];
+            mPermutation = new int[count];
+            mExtents = new int[count];
+            mDraggable = new boolean[count];
+            mSlotEdges = new int[count + 1];
+            mDisplaced = new int[count];
+            mNextDraggableSlots = new int[count];
+            mPreviousDraggableSlots = new int[count];
+            mCommittedExtents = new int[count];
+            mCommittedDraggable = new boolean[count];
+        }
+        for (int i = 0; i < count; i++) mSlotOrder[i] = i;
+        for (int i = 0; i < count; i++) mPermutation[i] = i;
+        mCount = count;
+        mDirty = false;
+        mSwapCount = 0;
+        mMoveCount = 0;
+    }
+
+    /**
+     * Ends the drag; the engine describes no children until the next
+     * {@link #begin}.
+     */
+    void end() {
+        mCount = 0;
+        mDirty = false;
+    }
+
+    /**
+     * Drops the drag-time order, putting every child back in its own slot.
+     */
+    void discard() {
+        for (int i = 0; i < mCount; i++) mSlotOrder[i] = i;
+        for (int i = 0; i < mCount; i++) mPermutation[i] = i;
+        mDirty = false;
+        buildDraggableTables();
+        updateEdges(0, mCount - 1);
+    }
+
+    /**
+     * Tabulates the nearest draggable slot at or before and at or after every
+     * slot. Moves only ever exchange draggable children, so the tables stay
+     * valid until the slot order is rebuilt some other way.
+     */
+    void buildDraggableTables() {
+        int previous = -1;
+        for (int i = 0; i < mCount; i++) {
+            if (mDraggable[mSlotOrder[i]]) previous = i;
+            mPreviousDraggableSlots[i] = previous;
+        }
+        int next = -1;
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (mDraggable[mSlotOrder[i]]) next = i;
+            mNextDraggableSlots[i] = next;
+        }
+    }
+
+    void updateEdges(int first, int last) {
+        for (int slot = first; slot <= last; slot++) {
+            mSlotEdges[slot + 1] = mSlotEdges[slot] + mExtents[mSlotOrder[slot]];
+        }
+    }
+
+    /**
+     * Resolves the slot the dragged item, or the first slot of a dragged group,
+     * should occupy by binary searching the slot midpoints, so a fast drag
+     * across several children lands on its target in one step. Midpoints must
+     * be crossed by {@code hysteresis} to keep the item from flipping back and
+     * forth around a boundary.
+     *
+     * @param lead leading edge of the dragged item along the orientation
+     * @param size extent of the dragged item or group
+     */
+    int findTargetSlot(int position, int groupSize, int lead, int size, int hysteresis) {
+        final int trail = lead + size;
+        if (groupSize > 1) return findGroupTargetSlot(position, groupSize, lead + hysteresis, trail - hysteresis);
+        final int after = lastSlotWithMidBefore(trail - hysteresis);
+        if (after > position) {
+            final int target = draggableSlotAtOrBefore(after);
+            if (target > position) return target;
+        }
+        final int before = firstSlotWithMidAfter(lead + hysteresis);
+        if (before < position) {
+            final int target = draggableSlotAtOrAfter(before);
+            if (target >= 0 && target < position) return target;
+        }
+        return position;
+    }
+
+    /**
+     * A dragged group only passes draggable neighbours; the first non-draggable
+     * child in either direction stops the block.
+     */
+    private int findGroupTargetSlot(int position, int groupSize, int lead, int trail) {
+        final int end = position + groupSize - 1;
+        final int after = lastSlotWithMidBefore(trail);
+        int newEnd = end;
+        while (newEnd < after && mNextDraggableSlots[newEnd + 1] == newEnd + 1) newEnd++;
+        if (newEnd > end) return position + newEnd - end;
+        final int before = firstSlotWithMidAfter(lead);
+        int newStart = position;
+        while (newStart > before && newStart > 0 && mPreviousDraggableSlots[newStart - 1] == newStart - 1) newStart--;
+        return newStart;
+    }
+
+    int lastSlotWithMidBefore(int coordinate) {
+        int low = 0;
+        int high = mCount - 1;
+        int result = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (mSlotEdges[mid] + mSlotEdges[mid + 1] < 2 * coordinate) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    int firstSlotWithMidAfter(int coordinate) {
+        int low = 0;
+        int high = mCount - 1;
+        int result = mCount;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (mSlotEdges[mid] + mSlotEdges[mid + 1] > 2 * coordinate) {
+                result = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the item at {@code from} to {@code target}, shifting every draggable
+     * child in between by one draggable slot. Non-draggable children keep their
+     * slots.
+     *
+     * @return how many children were displaced; their indices are in
+     * {@link #mDisplaced}
+     */
+    int moveTo(int from, int target) {
+        final boolean forward = target > from;
+        int displaced = 0;
+        int current = from;
+        while (current != target) {
+            final int next = forward ? draggableSlotAtOrAfter(current + 1) : draggableSlotAtOrBefore(current - 1);
+            mDisplaced[displaced++] = mSlotOrder[next];
+            swap(mSlotOrder, current, next);
+            swap(mPermutation, current, next);
+            current = next;
+        }
+        updateEdges(Math.min(from, target), Math.max(from, target));
+        onMoved(displaced);
+        return displaced;
+    }
+
+    /**
+     * Moves the group of {@code size} slots starting at {@code from} so that it
+     * starts at {@code target}. The passed children all shift by the group's
+     * size in one step, rather than being swapped past each group member in turn.
+     *
+     * @return how many children were displaced; their indices are in
+     * {@link #mDisplaced}
+     */
+    int moveGroupTo(int from, int size, int target) {
+        final int first = Math.min(from, target);
+        final int last = Math.max(from, target) + size - 1;
+        final int displacedFirst = target > from ? from + size : target;
+        final int displaced = Math.abs(target - from);
+        for (int i = 0; i < displaced; i++) mDisplaced[i] = mSlotOrder[displacedFirst + i];
+        final int shift = target > from ? size : last - first + 1 - size;
+        rotate(mSlotOrder, first, last, shift);
+        rotate(mPermutation, first, last, shift);
+        updateEdges(first, last);
+        onMoved(displaced);
+        return displaced;
+    }
+
+    /**
+     * Gathers the children flagged in {@code selected}, by child index, into the
+     * {@code size} slots starting at {@code start}, keeping their order; the
+     * other children keep theirs around the block. Meant for the start of a
+     * drag, before any other move. Non-draggable children keep their slots, so
+     * a selection with one of them in between is not gathered.
+     *
+     * @return how many unselected children were displaced, their indices being
+     * in {@link #mDisplaced}, or -1 if the selection was left as it is
+     */
+    int gather(boolean[] selected, int start, int size) {
+        int first = -1;
+        int last = -1;
+        for (int index = 0; index < mCount; index++) {
+            if (!selected[index]) continue;
+            if (first < 0) first = index;
+            last = index;
+        }
+        for (int index = first + 1; index < last; index++) {
+            if (!selected[index] && !mDraggable[index]) return -1;
+        }
+        int inside = start;
+        int outside = 0;
+        int displaced = 0;
+        for (int index = 0; index < mCount; index++) {
+            final int slot;
+            if (selected[index]) {
+                slot = inside++;
+            } else {
+                if (outside == start) outside += size;
+                slot = outside++;
+                if (slot != index) mDisplaced[displaced++] = index;
+            }
+            mSlotOrder[slot] = index;
+            mPermutation[slot] = index;
+        }
+        buildDraggableTables();
+        updateEdges(0, mCount - 1);
+        onMoved(displaced);
+        return displaced;
+    }
+
+    /**
+     * Returns the {@link #computeMoves} list that turns the child order at
+     * {@link #begin}, or at the last change to the children, into the current
+     * slot order.
+     */
+    int[] pendingMoves() {
+        return computeMoves(mPermutation, mCount);
+    }
+
+    /**
+     * Marks the current slot order as the child order, after the caller has
+     * reordered the children to match it. The per-child tables are permuted
+     * along with the children so they stay valid until the next measurement.
+     */
+    void commit() {
+        for (int slot = 0; slot < mCount; slot++) {
+            mCommittedExtents[slot] = mExtents[mSlotOrder[slot]];
+            mCommittedDraggable[slot] = mDraggable[mSlotOrder[slot]];
+        }
+        final int[] extents = mExtents;
+        mExtents = mCommittedExtents;
+        mCommittedExtents = extents;
+        final boolean[] draggable = mDraggable;
+        mDraggable = mCommittedDraggable;
+        mCommittedDraggable = draggable;
+        for (int i = 0; i < mCount; i++) mSlotOrder[i] = i;
+        mDirty = false;
+    }
+
+    /**
+     * Sets the extent of the child at {@code index}; the edges of the slots
+     * from its slot on are stale until {@link #updateEdges} is called.
+     */
+    void setExtent(int index, int extent) {
+        mExtents[index] = extent;
+    }
+
+    /**
+     * Sets whether the child at {@code index} can be dragged and displaced;
+     * the draggable tables are stale until {@link #buildDraggableTables()} is
+     * called.
+     */
+    void setDraggable(int index, boolean draggable) {
+        mDraggable[index] = draggable;
+    }
+
+    /**
+     * Sets the leading edge of the first slot.
+     */
+    void setStartEdge(int edge) {
+        mSlotEdges[0] = edge;
+    }
+
+    /**
+     * Returns the slot the child at {@code index} occupies, or -1.
+     */
+    int slotOf(int index) {
+        for (int slot = 0; slot < mCount; slot++) {
+            if (mSlotOrder[slot] == index) return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a child at {@code index} that occupies {@code slot}; children at or
+     * after that index move up one index. Its extent is 0 until the caller
+     * measures it. Counting moves starts over from the current slot order, so
+     * the caller takes the moves made so far from {@link #pendingMoves} first.
+     */
+    void insert(int index, int slot, boolean draggable) {
+        if (mSlotOrder.length < mCount + 1) grow(Math.max(2 * mSlotOrder.length, mCount + 1));
+        for (int i = 0; i < mCount; i++) {
+            if (mSlotOrder[i] >= index) mSlotOrder[i]++;
+        }
+        System.arraycopy(mSlotOrder, slot, mSlotOrder, slot + 1, mCount - slot);
+        mSlotOrder[slot] = index;
+        System.arraycopy(mExtents, index, mExtents, index + 1, mCount - index);
+        System.arraycopy(mDraggable, index, mDraggable, index + 1, mCount - index);
+        mExtents[index] = 0;
+        mDraggable[index] = draggable;
+        mCount++;
+        onChildrenChanged();
+    }
+
+    /**
+     * Drops the child at {@code index}; children after it move down one index.
+     * Counting moves starts over as for {@link #insert}.
+     *
+     * @return the slot the child occupied
+     */
+    int remove(int index) {
+        final int slot = slotOf(index);
+        System.arraycopy(mSlotOrder, slot + 1, mSlotOrder, slot, mCount - slot - 1);
+        System.arraycopy(mExtents, index + 1, mExtents, index, mCount - index - 1);
+        System.arraycopy(mDraggable, index + 1, mDraggable, index, mCount - index - 1);
+        mCount--;
+        for (int i = 0; i < mCount; i++) {
+            if (mSlotOrder[i] > index) mSlotOrder[i]--;
+        }
+        onChildrenChanged();
+        return slot;
+    }
+
+    private void onChildrenChanged() {
+        for (int i = 0; i < mCount; i++) mPermutation[i] = i;
+        mDirty = true;
+        buildDraggableTables();
+        updateEdges(0, mCount - 1);
+    }
+
+    private void grow(int capacity) {
+        mSlotOrder = Arrays.copyOf(mSlotOrder, capacity);
+        mPermutation = Arrays.copyOf(mPermutation, capacity);
+        mExtents = Arrays.copyOf(mExtents, capacity);
+        mDraggable = Arrays.copyOf(mDraggable, capacity);
+        mSlotEdges = Arrays.copyOf(mSlotEdges, capacity + 1);
+        mDisplaced = new int[capacity];
+        mNextDraggableSlots = new int[capacity];
+        mPreviousDraggableSlots = new int[capacity];
+        mCommittedExtents = new int[capacity];
+        mCommittedDraggable = new boolean[capacity];
+    }
+
+    private void onMoved(int displaced) {
+        mDirty = true;
+        mSwapCount += displaced;
+        mMoveCount++;
+    }
+
+    private int draggableSlotAtOrBefore(int slot) {
+        if (slot < 0) return -1;
+        return slot < mCount ? mPreviousDraggableSlots[slot] : mPreviousDraggableSlots[mCount - 1];
+    }
+
+    private int draggableSlotAtOrAfter(int slot) {
+        if (slot >= mCount) return -1;
+        return slot >= 0 ? mNextDraggableSlots[slot] : mNextDraggableSlots[0];
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        final int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * Rotates {@code values[first..last]} left by {@code shift} places in place.
+     */
+    private static void rotate(int[] values, int first, int last, int shift) {
+        reverse(values, first, first + shift - 1);
+        reverse(values, first + shift, last);
+        reverse(values, first, last);
+    }
+
+    private static void reverse(int[] values, int first, int last) {
+        for (; first < last; first++, last--) swap(values, first, last);
+    }
+
+    /**
+     * Computes the fewest sequential moves that turn the identity order into
+     * {@code order}, where {@code order[i]} is the original index of the child
+     * now at index i. Children on a longest increasing run of original indices
+     * stay put; each other child is moved right behind its new predecessor. The
+     * result holds (from, to) pairs meant to be applied in sequence as
+     * {@code list.add(to, list.remove(from))}.
+     */
+    static int[] computeMoves(int[] order, int count) {
+        final int[] tails = new int[count];
+        final int[] parents = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (order[tails[mid]] < order[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            parents[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+        final boolean[] stays = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = parents[i]) stays[i] = true;
+
+        final int[] current = new int[count];
+        for (int i = 0; i < count; i++) current[i] = i;
+        final int[] moves = new int[2 * (count - length)];
+        int moveCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (stays[i]) continue;
+            final int from = indexOf(current, count, order[i]);
+            System.arraycopy(current, from + 1, current, from, count - from - 1);
+            final int to = i > 0 ? indexOf(current, count - 1, order[i - 1]) + 1 : 0;
+            System.arraycopy(current, to, current, to + 1, count - 1 - to);
+            current[to] = order[i];
+            moves[moveCount++] = from;
+            moves[moveCount++] = to;
+        }
+        return moves;
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+}
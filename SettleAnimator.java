@@ -0,0 +1,71 @@
+package com.example.testaddviewphoto;
+
+/**
+ * Drops a released item into its slot with one spring along the drag and one
+ * across it, starting from the finger's release velocity. Moving the targets
+ * while the settle runs only retargets the springs, so the running settle is
+ * never torn down.
+ */
+abstract class SettleAnimator implements FrameAnimator.Animation {
+    private final FrameAnimator mAnimator = new FrameAnimator();
+    private final Spring mSpring = new Spring(Spring.SETTLE_STIFFNESS);
+    private final Spring mCrossSpring = new Spring(Spring.SETTLE_STIFFNESS);
+    private boolean mRunning;
+    private boolean mSettled;
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts settling from the given position and velocity towards the
+     * targets; while a settle is running, only its targets move. A flick
+     * towards the target is slowed so the item does not shoot past its slot.
+     */
+    void start(float position, float crossPosition, float velocity, float target, float crossTarget) {
+        mSpring.mTarget = target;
+        mCrossSpring.mTarget = crossTarget;
+        if (mRunning) return;
+        mSpring.mPosition = position;
+        mSpring.mVelocity = velocity;
+        mSpring.limitOvershoot();
+        mCrossSpring.mPosition = crossPosition;
+        mCrossSpring.mVelocity = 0;
+        mRunning = true;
+        mAnimator.add(this);
+    }
+
+    /**
+     * Stops a running settle without finishing it.
+     */
+    void cancel() {
+        mAnimator.remove(this);
+    }
+
+    @Override
+    public final boolean step(long frameNanos) {
+        mSpring.step(frameNanos);
+        mCrossSpring.step(frameNanos);
+        if (mSpring.isAtRest() && mCrossSpring.isAtRest()) {
+            mSettled = true;
+            return false;
+        }
+        onFrame(Math.round(mSpring.mPosition), Math.round(mCrossSpring.mPosition));
+        return true;
+    }
+
+    @Override
+    public final void end() {
+        mRunning = false;
+        if (!mSettled) return;
+        mSettled = false;
+        onSettled(Math.round(mSpring.mTarget), Math.round(mCrossSpring.mTarget));
+    }
+
+    abstract void onFrame(int position, int crossPosition);
+
+    /**
+     * Called with the targets once both springs have come to rest.
+     */
+    abstract void onSettled(int position, int crossPosition);
+}
@@ -0,0 +1,129 @@
+package com.example.testaddviewphoto;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Renders drag snapshots within a byte budget and keeps them alive between
+ * drags, bucketed by allocation size so a later drag of a similar-sized child
+ * can reconfigure a pooled bitmap instead of allocating a new one. The pool
+ * holds at most twice the budget.
+ */
+final class SnapshotPool {
+    static final int DEFAULT_BUDGET_BYTES = 4 * 1024 * 1024;
+    private final SparseArray<ArrayList<Bitmap>> mBuckets = new SparseArray<>();
+    private int mBudgetBytes = DEFAULT_BUDGET_BYTES;
+    private int mMaxBytes = 2 * DEFAULT_BUDGET_BYTES;
+    private int mPooledBytes;
+
+    /**
+     * Caps the size of a single snapshot in bytes.
+     */
+    void setBudget(int budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Snapshot budget must be positive.");
+        }
+        mBudgetBytes = budgetBytes;
+        mMaxBytes = 2 * budgetBytes;
+        trimTo(mMaxBytes);
+    }
+
+    /**
+     * Renders the views into one pooled bitmap covering the given bounds.
+     * Snapshots that would exceed the budget fall back to RGB_565 and, if still
+     * too large, are downscaled; the drawable bounds stay at full size so the
+     * shadow is stretched back up.
+     */
+    Bitmap render(View[] views, int count, Rect bounds) {
+        final int width = Math.max(1, bounds.width());
+        final int height = Math.max(1, bounds.height());
+        Bitmap.Config config = Bitmap.Config.ARGB_8888;
+        long bytes = (long) width * height * 4;
+        float scale = 1f;
+        if (bytes > mBudgetBytes) {
+            config = Bitmap.Config.RGB_565;
+            bytes /= 2;
+            if (bytes > mBudgetBytes) {
+                scale = (float) Math.sqrt((double) mBudgetBytes / bytes);
+            }
+        }
+        final int bitmapWidth = Math.max(1, (int) (width * scale));
+        final int bitmapHeight = Math.max(1, (int) (height * scale));
+        Bitmap bitmap = acquire(bitmapWidth, bitmapHeight, config);
+        Canvas canvas = new Canvas(bitmap);
+        if (scale < 1f) canvas.scale((float) bitmapWidth / width, (float) bitmapHeight / height);
+        for (int i = 0; i < count; i++) {
+            final View view = views[i];
+            canvas.save();
+            canvas.translate(view.getLeft() - bounds.left, view.getTop() - bounds.top);
+            view.draw(canvas);
+            canvas.restore();
+        }
+        return bitmap;
+    }
+
+    Bitmap acquire(int width, int height, Bitmap.Config config) {
+        final int bytes = width * height * (config == Bitmap.Config.RGB_565 ? 2 : 4);
+        final int bucket = bucketOf(bytes);
+        for (int b = bucket; b <= bucket + 1; b++) {
+            final ArrayList<Bitmap> bitmaps = mBuckets.get(b);
+            if (null == bitmaps) continue;
+            for (int i = bitmaps.size() - 1; i >= 0; i--) {
+                final Bitmap bitmap = bitmaps.get(i);
+                if (bitmap.getAllocationByteCount() < bytes) continue;
+                bitmaps.remove(i);
+                mPooledBytes -= bitmap.getAllocationByteCount();
+                if (bitmap.getWidth() != width || bitmap.getHeight() != height
+                        || bitmap.getConfig() != config) {
+                    bitmap.reconfigure(width, height, config);
+                }
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    void release(Bitmap bitmap) {
+        if (null == bitmap || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        final int bytes = bitmap.getAllocationByteCount();
+        if (bytes > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        trimTo(mMaxBytes - bytes);
+        final int bucket = bucketOf(bytes);
+        ArrayList<Bitmap> bitmaps = mBuckets.get(bucket);
+        if (null == bitmaps) {
+            bitmaps = new ArrayList<>(2);
+            mBuckets.put(bucket, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mPooledBytes += bytes;
+    }
+
+    void clear() {
+        trimTo(0);
+    }
+
+    private void trimTo(int maxBytes) {
+        for (int i = mBuckets.size() - 1; i >= 0 && mPooledBytes > maxBytes; i--) {
+            final ArrayList<Bitmap> bitmaps = mBuckets.valueAt(i);
+            while (!bitmaps.isEmpty() && mPooledBytes > maxBytes) {
+                final Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+                mPooledBytes -= bitmap.getAllocationByteCount();
+                bitmap.recycle();
+            }
+        }
+    }
+
+    private static int bucketOf(int bytes) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, bytes) - 1);
+    }
+}
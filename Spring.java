@@ -0,0 +1,47 @@
+package com.example.testaddviewphoto;
+
+/**
+ * Critically damped spring towards a target that may move at any time. The
+ * state is advanced analytically from the current position and velocity, so
+ * retargeting keeps the motion continuous. Started from rest it never
+ * overshoots; a velocity towards the target faster than omega times the
+ * distance carries it past the target once, see {@link #limitOvershoot()}.
+ */
+final class Spring {
+    /** Stiffness of the spring that drops a released item into its slot. */
+    static final float SETTLE_STIFFNESS = 800f;
+    /** Stiffness of the springs that move displaced children to their slots. */
+    static final float SWITCH_STIFFNESS = 800f;
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 10f;
+    private final float mOmega;
+    float mPosition;
+    float mVelocity;
+    float mTarget;
+
+    Spring(float stiffness) {
+        mOmega = (float) Math.sqrt(stiffness);
+    }
+
+    void step(long frameNanos) {
+        final float dt = frameNanos / 1000000000f;
+        final float x0 = mPosition - mTarget;
+        final float c2 = mVelocity + mOmega * x0;
+        final float decay = (float) Math.exp(-mOmega * dt);
+        mPosition = mTarget + (x0 + c2 * dt) * decay;
+        mVelocity = (c2 - mOmega * (x0 + c2 * dt)) * decay;
+    }
+
+    /**
+     * Slows a velocity towards the target to the fastest one that still comes
+     * to rest without passing the target.
+     */
+    void limitOvershoot() {
+        final float x0 = mPosition - mTarget;
+        if (x0 * mVelocity < 0 && Math.abs(mVelocity) > mOmega * Math.abs(x0)) mVelocity = -mOmega * x0;
+    }
+
+    boolean isAtRest() {
+        return Math.abs(mPosition - mTarget) < REST_DISTANCE && Math.abs(mVelocity) < REST_VELOCITY;
+    }
+}
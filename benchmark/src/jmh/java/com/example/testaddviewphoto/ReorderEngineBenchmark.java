@@ -0,0 +1,74 @@
+package com.example.testaddviewphoto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the engine's drag-time work against the number of
+ * children: a swap with the neighbouring slot, a move across the whole
+ * layout, resolving the target slot for a drag frame, and committing a
+ * reordered drag. Every other child is draggable so moves step over
+ * non-draggable ones as they do in a mixed layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReorderEngineBenchmark {
+    private static final int EXTENT = 48;
+    private static final int HYSTERESIS = 4;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int mChildCount;
+
+    private final ReorderEngine mEngine = new ReorderEngine();
+    private int mLast;
+    private int mLead;
+
+    @Setup
+    public void setUp() {
+        mEngine.begin(mChildCount);
+        for (int i = 0; i < mChildCount; i++) {
+            mEngine.setExtent(i, EXTENT);
+            mEngine.setDraggable(i, i % 2 == 0);
+        }
+        mEngine.buildDraggableTables();
+        mEngine.setStartEdge(0);
+        mEngine.updateEdges(0, mChildCount - 1);
+        mLast = (mChildCount - 1) & ~1;
+        mLead = (mChildCount / 2) * EXTENT;
+    }
+
+    /** One drag frame that crosses into the next draggable slot and back. */
+    @Benchmark
+    public int swapNeighbour() {
+        return mEngine.moveTo(0, 2) + mEngine.moveTo(2, 0);
+    }
+
+    /** A fling from the first draggable slot to the last and back. */
+    @Benchmark
+    public int moveAcross() {
+        return mEngine.moveTo(0, mLast) + mEngine.moveTo(mLast, 0);
+    }
+
+    /** The slot lookup every drag frame runs, whether or not it swaps. */
+    @Benchmark
+    public int findTargetSlot() {
+        return mEngine.findTargetSlot(0, 1, mLead, EXTENT, HYSTERESIS);
+    }
+
+    /** Folding a drag-time order back into the child order on drop. */
+    @Benchmark
+    public int commit() {
+        mEngine.moveTo(0, 2);
+        mEngine.commit();
+        return mEngine.mCount;
+    }
+}
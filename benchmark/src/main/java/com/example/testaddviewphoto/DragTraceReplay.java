@@ -0,0 +1,34 @@
+package com.example.testaddviewphoto;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Replays {@link DragTrace} files written on a device with
+ * {@link DragTrace#writeTo} against the reorder engine and prints what each
+ * one cost, one line per trace.
+ */
+public final class DragTraceReplay {
+    private DragTraceReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (0 == args.length) {
+            System.err.println("Usage: DragTraceReplay <trace file>...");
+            System.exit(2);
+        }
+        System.out.println("trace\tchildren\tevents\tswaps\tmoves\tend\tavg_ns\tmax_ns");
+        for (String path : args) {
+            final DragTrace trace;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+                trace = DragTrace.readFrom(in);
+            }
+            final DragTrace.ReplayResult result = trace.replay();
+            System.out.println(path + '\t' + trace.getChildCount() + '\t' + result.getEventCount() + '\t'
+                    + result.getSwapCount() + '\t' + result.getMoveCount() + '\t' + result.getEndPosition() + '\t'
+                    + result.getAverageEventNanos() + '\t' + result.getMaxEventNanos());
+        }
+    }
+}
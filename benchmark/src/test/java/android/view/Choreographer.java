@@ -0,0 +1,59 @@
+package android.view;
+
+/**
+ * JVM stand-in for the framework Choreographer. Posted callbacks run when the
+ * test calls {@link #doFrame}; like the real one, a callback posted during a
+ * frame runs on the next one.
+ */
+public final class Choreographer {
+    private static final Choreographer INSTANCE = new Choreographer();
+    private FrameCallback[] mCallbacks = new FrameCallback[16];
+    private FrameCallback[] mRunning = new FrameCallback[16];
+    private int mCount;
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance() {
+        return INSTANCE;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+        if (mCount == mCallbacks.length) {
+            final FrameCallback[] callbacks = new FrameCallback[2 * mCount];
+            System.arraycopy(mCallbacks, 0, callbacks, 0, mCount);
+            mCallbacks = callbacks;
+            mRunning = new FrameCallback[2 * mCount];
+        }
+        mCallbacks[mCount++] = callback;
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        int kept = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mCallbacks[i] != callback) mCallbacks[kept++] = mCallbacks[i];
+        }
+        for (int i = kept; i < mCount; i++) mCallbacks[i] = null;
+        mCount = kept;
+    }
+
+    public boolean hasCallbacks() {
+        return mCount > 0;
+    }
+
+    /**
+     * Runs the callbacks posted before this frame.
+     */
+    public void doFrame(long frameTimeNanos) {
+        final FrameCallback[] running = mCallbacks;
+        final int count = mCount;
+        mCallbacks = mRunning;
+        mRunning = running;
+        mCount = 0;
+        for (int i = 0; i < count; i++) {
+            running[i].doFrame(frameTimeNanos);
+            running[i] = null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package android.view;
+
+/**
+ * JVM stand-in for the framework View, with just the translation the
+ * displacement springs write.
+ */
+public class View {
+    private float mTranslationX;
+    private float mTranslationY;
+
+    public void setTranslationX(float translationX) {
+        mTranslationX = translationX;
+    }
+
+    public void setTranslationY(float translationY) {
+        mTranslationY = translationY;
+    }
+
+    public float getTranslationX() {
+        return mTranslationX;
+    }
+
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+}
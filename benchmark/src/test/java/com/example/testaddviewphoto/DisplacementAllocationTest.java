@@ -0,0 +1,72 @@
+package com.example.testaddviewphoto;
+
+import android.view.Choreographer;
+import android.view.View;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The View side of a swap must not allocate either: each displaced child is
+ * sprung back by {@link DisplacedChild#animateFrom} on the shared
+ * {@link FrameAnimator}, frame after frame. Runs against JVM stand-ins for
+ * View and Choreographer, so the layout code that calls into these, such as
+ * DragLinearLayout's animateDisplacedChild, is not itself covered.
+ */
+public class DisplacementAllocationTest {
+    private static final int CHILD_COUNT = 100;
+    private static final int EXTENT = 48;
+    private static final int FRAMES = 10000;
+    private static final long FRAME_NANOS = 16666667L;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long drag(DisplacedChild[] children, long frameTimeNanos, int frames) {
+        final Choreographer choreographer = Choreographer.getInstance();
+        for (int frame = 0; frame < frames; frame++) {
+            // a swap every other frame, some of them catching a child still moving
+            if (0 == frame % 2) {
+                final DisplacedChild child = children[frame % CHILD_COUNT];
+                child.animateFrom(0, frame % 4 == 0 ? EXTENT : -EXTENT);
+            }
+            frameTimeNanos += FRAME_NANOS;
+            choreographer.doFrame(frameTimeNanos);
+        }
+        return frameTimeNanos;
+    }
+
+    @Test
+    public void displacingChildrenAllocatesNothing() {
+        final FrameAnimator animator = new FrameAnimator();
+        final DisplacedChild[] children = new DisplacedChild[CHILD_COUNT];
+        for (int i = 0; i < CHILD_COUNT; i++) children[i] = new DisplacedChild(new View(), animator);
+        // lets the animator's list grow to its working size
+        for (DisplacedChild child : children) child.animateFrom(0, EXTENT);
+        long frameTimeNanos = drag(children, 0, FRAMES);
+
+        // the cost of reading the counter itself is measured and taken off
+        final long baselineStart = allocatedBytes();
+        final long baseline = allocatedBytes() - baselineStart;
+        final long start = allocatedBytes();
+        frameTimeNanos = drag(children, frameTimeNanos, FRAMES);
+        final long allocated = allocatedBytes() - start - baseline;
+
+        assertTrue(Choreographer.getInstance().hasCallbacks());
+        assertEquals(0, allocated);
+
+        animator.clear();
+        assertFalse(Choreographer.getInstance().hasCallbacks());
+        for (DisplacedChild child : children) {
+            assertFalse(child.isAnimating());
+            assertEquals(0f, child.mView.getTranslationY(), 0f);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.testaddviewphoto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class DragTraceTest {
+    private static final int EXTENT = 100;
+    private static final int HYSTERESIS = 4;
+
+    private static DragTrace newTrace(boolean... draggable) {
+        final int[] extents = new int[draggable.length];
+        for (int i = 0; i < extents.length; i++) extents[i] = EXTENT;
+        return new DragTrace(extents, draggable, draggable.length, 0, 0, 0, EXTENT, HYSTERESIS);
+    }
+
+    @Test
+    public void slowDragMovesOneSlotAtATime() {
+        final DragTrace trace = newTrace(true, true, true, true, true);
+        for (int offset = 0; offset <= 400; offset += 10) trace.addEvent(DragTrace.EVENT_MOVE, offset, offset);
+        trace.addEvent(DragTrace.EVENT_UP, 500, 0);
+
+        final DragTrace.ReplayResult result = trace.replay();
+        assertEquals(41, result.getEventCount());
+        assertEquals(4, result.getSwapCount());
+        assertEquals(4, result.getMoveCount());
+        assertEquals(4, result.getEndPosition());
+    }
+
+    @Test
+    public void fastDragMovesOnceAcrossSeveralChildren() {
+        final DragTrace trace = newTrace(true, true, true, true, true);
+        trace.addEvent(DragTrace.EVENT_MOVE, 0, 400);
+
+        final DragTrace.ReplayResult result = trace.replay();
+        assertEquals(4, result.getSwapCount());
+        assertEquals(1, result.getMoveCount());
+        assertEquals(4, result.getEndPosition());
+    }
+
+    @Test
+    public void nonDraggableChildKeepsItsSlot() {
+        final DragTrace trace = newTrace(true, true, false, true, true);
+        trace.addEvent(DragTrace.EVENT_MOVE, 0, 400);
+
+        final DragTrace.ReplayResult result = trace.replay();
+        assertEquals(3, result.getSwapCount());
+        assertEquals(4, result.getEndPosition());
+    }
+
+    @Test
+    public void dragWithinHysteresisDoesNotMove() {
+        final DragTrace trace = newTrace(true, true);
+        trace.addEvent(DragTrace.EVENT_MOVE, 0, EXTENT / 2 + HYSTERESIS - 1);
+
+        final DragTrace.ReplayResult result = trace.replay();
+        assertEquals(0, result.getMoveCount());
+        assertEquals(0, result.getEndPosition());
+    }
+
+    @Test
+    public void writtenTraceReadsBackAndReplaysTheSame() throws IOException {
+        final DragTrace trace = newTrace(true, false, true, true);
+        trace.addEvent(DragTrace.EVENT_MOVE, 16, 120);
+        trace.addEvent(DragTrace.EVENT_MOVE, 32, 260);
+        trace.addEvent(DragTrace.EVENT_UP, 48, 0);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        trace.writeTo(new DataOutputStream(bytes));
+
+        final DragTrace read = DragTrace.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(trace.getChildCount(), read.getChildCount());
+        assertEquals(trace.getEventCount(), read.getEventCount());
+        for (int i = 0; i < trace.getEventCount(); i++) {
+            assertEquals(trace.getEventAction(i), read.getEventAction(i));
+            assertEquals(trace.getEventTimeMillis(i), read.getEventTimeMillis(i));
+            assertEquals(trace.getEventOffset(i), read.getEventOffset(i));
+        }
+        final DragTrace.ReplayResult expected = trace.replay();
+        final DragTrace.ReplayResult actual = read.replay();
+        assertEquals(expected.getSwapCount(), actual.getSwapCount());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        assertEquals(expected.getEndPosition(), actual.getEndPosition());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.testaddviewphoto;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steady-state dragging must not allocate: every drag frame looks up the
+ * target slot and most swap, so garbage here turns into GC pauses mid-drag.
+ */
+public class ReorderEngineAllocationTest {
+    private static final int CHILD_COUNT = 100;
+    private static final int EXTENT = 48;
+    private static final int FRAMES = 10000;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static int drag(ReorderEngine engine, int frames) {
+        int position = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            // back and forth over the whole layout, a little over one slot per frame
+            final int lead = Math.abs(frame % (2 * CHILD_COUNT) - CHILD_COUNT) * EXTENT;
+            final int target = engine.findTargetSlot(position, 1, lead, EXTENT, 4);
+            if (target != position) {
+                engine.moveTo(position, target);
+                position = target;
+            }
+        }
+        return position;
+    }
+
+    @Test
+    public void swapsAllocateNothing() {
+        final ReorderEngine engine = new ReorderEngine();
+        engine.begin(CHILD_COUNT);
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            engine.setExtent(i, EXTENT);
+            engine.setDraggable(i, true);
+        }
+        engine.buildDraggableTables();
+        engine.updateEdges(0, CHILD_COUNT - 1);
+        drag(engine, FRAMES);
+
+        // the cost of reading the counter itself is measured and taken off
+        final long baselineStart = allocatedBytes();
+        final long baseline = allocatedBytes() - baselineStart;
+        final int swapsBefore = engine.mSwapCount;
+        final long start = allocatedBytes();
+        drag(engine, FRAMES);
+        final long allocated = allocatedBytes() - start - baseline;
+
+        assertTrue(engine.mSwapCount - swapsBefore >= FRAMES / 2);
+        assertEquals(0, allocated);
+    }
+}
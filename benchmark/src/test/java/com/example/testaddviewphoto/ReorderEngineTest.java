@@ -0,0 +1,151 @@
+package com.example.testaddviewphoto;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReorderEngineTest {
+
+    private static ReorderEngine newEngine(int... extents) {
+        final ReorderEngine engine = new ReorderEngine();
+        engine.begin(extents.length);
+        for (int i = 0; i < extents.length; i++) {
+            engine.setExtent(i, extents[i]);
+            engine.setDraggable(i, true);
+        }
+        engine.buildDraggableTables();
+        engine.updateEdges(0, extents.length - 1);
+        return engine;
+    }
+
+    private static int[] slotOrder(ReorderEngine engine) {
+        return Arrays.copyOf(engine.mSlotOrder, engine.mCount);
+    }
+
+    private static int[] edges(ReorderEngine engine) {
+        return Arrays.copyOf(engine.mSlotEdges, engine.mCount + 1);
+    }
+
+    /** Applies the moves to the identity order the way a host list would. */
+    private static List<Integer> applyMoves(int[] moves, int count) {
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) list.add(i);
+        for (int i = 0; i < moves.length; i += 2) list.add(moves[i + 1], list.remove(moves[i]));
+        return list;
+    }
+
+    @Test
+    public void moveUpdatesTheEdgesOfThePassedSlots() {
+        final ReorderEngine engine = newEngine(10, 20, 30, 40);
+        assertEquals(2, engine.moveTo(0, 2));
+        assertArrayEquals(new int[]{1, 2, 0, 3}, slotOrder(engine));
+        assertArrayEquals(new int[]{0, 20, 50, 60, 100}, edges(engine));
+        assertTrue(engine.mDirty);
+    }
+
+    @Test
+    public void pendingMovesTurnTheStartOrderIntoTheSlotOrder() {
+        final ReorderEngine engine = newEngine(10, 10, 10, 10, 10);
+        engine.moveTo(4, 1);
+        engine.moveTo(0, 3);
+        final int[] expected = slotOrder(engine);
+        final List<Integer> moved = applyMoves(engine.pendingMoves(), engine.mCount);
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], (int) moved.get(i));
+    }
+
+    @Test
+    public void commitKeepsExtentsWithTheirChildren() {
+        final ReorderEngine engine = newEngine(50, 50, 100, 50);
+        engine.moveTo(2, 0);
+        engine.commit();
+        assertArrayEquals(new int[]{0, 1, 2, 3}, slotOrder(engine));
+        engine.updateEdges(0, engine.mCount - 1);
+        assertArrayEquals(new int[]{0, 100, 150, 200, 250}, edges(engine));
+    }
+
+    @Test
+    public void insertShiftsLaterChildrenAndRestartsCounting() {
+        final ReorderEngine engine = newEngine(10, 20, 30, 40);
+        engine.moveTo(0, 2);
+        engine.insert(1, engine.slotOf(0) + 1, true);
+        assertArrayEquals(new int[]{2, 3, 0, 1, 4}, slotOrder(engine));
+        assertArrayEquals(new int[]{0, 20, 50, 60, 60, 100}, edges(engine));
+        assertEquals(0, engine.pendingMoves().length);
+    }
+
+    @Test
+    public void removeDropsTheChildsSlot() {
+        final ReorderEngine engine = newEngine(10, 20, 30, 40);
+        engine.moveTo(0, 2);
+        assertEquals(1, engine.remove(2));
+        assertArrayEquals(new int[]{1, 0, 2}, slotOrder(engine));
+        assertArrayEquals(new int[]{0, 20, 30, 70}, edges(engine));
+    }
+
+    @Test
+    public void removingSeveralChildrenDuringADragKeepsTheRestInOrder() {
+        final ReorderEngine engine = newEngine(10, 20, 30, 40, 50);
+        engine.moveTo(0, 3);
+        // removeViews(1, 2) reports children 1 and 2 before the child array changes
+        final List<Integer> children = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4));
+        for (int child = 1; child <= 2; child++) {
+            final int index = children.indexOf(child);
+            engine.remove(index);
+            children.remove(index);
+        }
+        assertArrayEquals(new int[]{1, 0, 2}, slotOrder(engine));
+        assertArrayEquals(new int[]{0, 40, 50, 100}, edges(engine));
+        assertEquals(1, engine.slotOf(children.indexOf(0)));
+        assertEquals(0, engine.pendingMoves().length);
+    }
+
+    @Test
+    public void removingEveryChildDuringADragEmptiesTheEngine() {
+        final ReorderEngine engine = newEngine(10, 20, 30, 40);
+        engine.moveTo(3, 0);
+        // removeAllViews reports every child in index order
+        for (int i = 0; i < 4; i++) {
+            engine.remove(0);
+            for (int slot = 0; slot < engine.mCount; slot++) {
+                assertTrue(engine.mSlotOrder[slot] >= 0 && engine.mSlotOrder[slot] < engine.mCount);
+            }
+        }
+        assertEquals(0, engine.mCount);
+        assertArrayEquals(new int[]{0}, edges(engine));
+    }
+
+    @Test
+    public void gatherBuildsOneBlockAroundTheStart() {
+        final ReorderEngine engine = newEngine(10, 10, 10, 10, 10);
+        final boolean[] selected = {true, false, false, true, false};
+        assertEquals(2, engine.gather(selected, 1, 2));
+        assertArrayEquals(new int[]{1, 0, 3, 2, 4}, slotOrder(engine));
+    }
+
+    @Test
+    public void gatherLeavesASelectionSplitByANonDraggableChild() {
+        final ReorderEngine engine = newEngine(10, 10, 10);
+        engine.setDraggable(1, false);
+        engine.buildDraggableTables();
+        final boolean[] selected = {true, false, true};
+        assertEquals(-1, engine.gather(selected, 0, 2));
+        assertArrayEquals(new int[]{0, 1, 2}, slotOrder(engine));
+        assertEquals(0, engine.pendingMoves().length);
+    }
+
+    @Test
+    public void discardRestoresTheChildOrder() {
+        final ReorderEngine engine = newEngine(10, 20, 30);
+        engine.moveTo(0, 2);
+        engine.discard();
+        assertArrayEquals(new int[]{0, 1, 2}, slotOrder(engine));
+        assertArrayEquals(new int[]{0, 10, 30, 60}, edges(engine));
+        assertEquals(0, engine.pendingMoves().length);
+    }
+}